@@ -2,6 +2,99 @@ module.exports = function (grunt) {
 
     'use strict';
 
+    // PouchDroid only ever talks to PouchDB through websql (our native SQLite shim) and http (our native XHR
+    // shim), so the idb and leveldb adapters are stripped out of the PouchDB build.  Less JS to parse on startup.
+    var stripAdapters = [
+        {
+            // the body of the browserify module for adapters/idb
+            pattern: /(\],3:\[function\([\w,]*\)\{)[\s\S]*?\},\{[^}]*\}\],4:\[/,
+            replacement: '$1\n},{}],4:['
+        },
+        {
+            pattern: /\w+\.adapter\(['"]idb['"],\s*\w+\(['"]\.\/adapters\/idb['"]\)\)[;,]/,
+            replacement: ''
+        },
+        {
+            pattern: /!\w+\.browser\)\s*\{\s*var \w+\s*=\s*\w+\(['"]\.\/adapters\/leveldb['"]\);[^}]*\}/,
+            replacement: '!1){}'
+        }
+    ];
+
+    // Have the replicator report each batch it writes to the target as opts.onBatch(err, progress), so that
+    // AsyncPouchDB can hand replication throughput to a ReplicationListener.  Hooks into docsWritten(), which only
+    // calls opts.onChange once per doc.
+    var replicationBatchEvents = [
+        {
+            pattern: /(function \w+\((\w+),\s*\w+,\s*(\w+)\)\s*\{)(\s*if\s*\((\w+)\.onChange\)[\s\S]{0,200}?\.onChange\.apply\(this,\s*\[(\w+)\]\);[\s\S]{0,40}?(\w+)\s*-=\s*\3[;,]\s*\6\.docs_written\s*\+=\s*\3[;,]\s*\w+\(\w+,\s*\w+,\s*\w+,\s*(\w+),)/,
+            replacement: '$1if($5.onBatch){$5.onBatch($2,{docs_written:$3,total_docs_read:$6.docs_read,' +
+                'total_docs_written:$6.docs_written+$3,pending_revs:$7-$3,last_seq:$8});}$4'
+        }
+    ];
+
+    // Let replications choose their batch size (opts.batch_size) instead of the http adapter's hardcoded 25.  The
+    // replicator writes whatever it has fetched from one page of _changes as one _bulk_docs, so this sets both.
+    var replicationBatchSize = [
+        {
+            pattern: /(\.changes\s*=\s*function\s*\((\w+)\)\s*\{[\s\S]{0,400}?var \w+\s*=\s*)25;/,
+            replacement: '$1$2.batch_size||25;'
+        },
+        {
+            // pass it from the replicator on to changes()
+            pattern: /(doc_ids:\s*\w+)(\s*\}[;,]?\s*(?:if\s*\(\s*)?(\w+)\.filter)/,
+            replacement: '$1,batch_size:$3.batch_size$2'
+        }
+    ];
+
+    // Filtered replication: send doc_ids to CouchDB as filter=_doc_ids instead of fetching the whole _changes feed
+    // and dropping most of it on the client, URL-encode filter and query_params values, filter by opts.id_prefix
+    // (our own option) before any doc is fetched, and give every combination of filters its own checkpoint, so
+    // that switching the filtered subset doesn't skip the docs of the new subset.
+    var replicationFilters = [
+        {
+            pattern: /((\w+)\.since\s*=\s*\w+[;,]\s*(?:if\s*\(\s*!)?(\w+)\.continuous[\s\S]{0,300}?=\s*['"]\?['"]\s*\+\s*)(Object\.keys\(\2\)\.map\(function\s*\((\w+)\)\s*\{\s*return \5\s*\+\s*['"]=['"]\s*\+\s*)\2\[\5\](;?\s*\}\)\.join\(['"]&['"]\))([\s\S]{0,200}?method:\s*)['"]GET['"]/,
+            replacement: '$1($3.doc_ids&&!$2.filter&&($2.filter="_doc_ids"),$4encodeURIComponent($2[$5])$6)$7' +
+                '$2.filter==="_doc_ids"?"POST":"GET",body:$2.filter==="_doc_ids"?{doc_ids:$3.doc_ids}:undefined'
+        },
+        {
+            // the checkpoint id
+            pattern: /var (\w+)\s*=\s*(\w+)\.filter\s*\?\s*\2\.filter\.toString\(\)\s*:\s*(['"]{2})/,
+            replacement: 'var $1=($2.filter?$2.filter.toString():"")+($2.doc_ids?JSON.stringify($2.doc_ids):"")' +
+                '+($2.query_params?JSON.stringify($2.query_params):"")+($2.id_prefix||"")'
+        },
+        {
+            pattern: /(if\s*\(\s*(\w+)\.doc_ids\s*&&\s*(?:-1\s*===\s*)?\2\.doc_ids\.indexOf\((\w+)\.id\))/,
+            replacement: 'if($2.id_prefix&&$3.id.indexOf($2.id_prefix)!==0){return false;}$1'
+        },
+        {
+            // pass it from the replicator on to changes()
+            pattern: /(batch_size:(\w+)\.batch_size)/,
+            replacement: '$1,id_prefix:$2.id_prefix'
+        }
+    ];
+
+    // Let allDocs() page through a big database: opts.scan_limit (our own option) puts a LIMIT on the websql query,
+    // instead of reading the whole range and slicing it afterwards like opts.limit does, and the response gets a
+    // last_key, i.e. the id of the last row scanned.  Deleted docs are scanned but not returned, so a page can come
+    // back short, or even empty, and last_key is where the next one starts.
+    var allDocsScanLimit = [
+        {
+            pattern: /(_allDocs\s*=\s*function\s*\(\w+,\s*\w+\)\s*\{\s*var )/,
+            replacement: '$1lastKey=null,'
+        },
+        {
+            pattern: /(_allDocs\s*=\s*function\s*\((\w+),[\s\S]{0,1500}?['"] ORDER BY ['"]\s*\+\s*\w+\s*\+\s*['"]\.id ['"]\s*\+\s*\(\w+\s*\?\s*['"]DESC['"]\s*:\s*['"]ASC['"]\))/,
+            replacement: '$1+($2.scan_limit?" LIMIT "+($2.scan_limit|0):"")'
+        },
+        {
+            pattern: /(_allDocs\s*=\s*function[\s\S]{0,2000}?executeSql\(\w+,\s*\w+,\s*function\s*\(\w+,\s*(\w+)\)\s*\{)/,
+            replacement: '$1if($2.rows.length){lastKey=$2.rows.item($2.rows.length-1).id;}'
+        },
+        {
+            pattern: /(_allDocs\s*=\s*function\s*\((\w+),[\s\S]{0,3000}?total_rows:\s*\w+\.length,)/,
+            replacement: '$1last_key:$2.scan_limit?lastKey:undefined,'
+        }
+    ];
+
     grunt.initConfig({
 
         pkg: grunt.file.readJSON('package.json'),
@@ -11,6 +104,12 @@ module.exports = function (grunt) {
         js_lib_path: 'lib',
         js_build_path: '../library/res/raw',
 
+        // raw byte budgets for the files we load into the WebView; the 'sizes' task fails if they're exceeded
+        size_budgets: {
+            'pouchdb_min.js': 66000,
+            'pouchdroid_min.js': 12000
+        },
+
         // Grunt Tasks
         concat: {
             options: {
@@ -45,7 +144,8 @@ module.exports = function (grunt) {
                         pattern: /\bopenDatabase\b/g,
                         replacement: 'PouchDroid.SQLiteNativeDB.openNativeDatabase'
                     }
-                ]
+                ].concat(stripAdapters, replicationBatchEvents, replicationBatchSize, replicationFilters,
+                    allDocsScanLimit)
             },
             pouchdb: {
                 src: '<%= js_lib_path %>/pouchdb-nightly.js',
@@ -56,6 +156,15 @@ module.exports = function (grunt) {
                 dest: '<%= js_build_path %>/pouchdb_min.js'
             }
         },
+        sizes: {
+            js: {
+                src: [
+                    '<%= js_build_path %>/pouchdb_min.js',
+                    '<%= js_build_path %>/<%= pkg.name %>_min.js'
+                ],
+                dest: 'build-sizes.json'
+            }
+        },
         watch: {
             js: {
                 files: '<%= js_src_path %>/*.js',
@@ -69,6 +178,33 @@ module.exports = function (grunt) {
     grunt.loadNpmTasks('grunt-frep');
     grunt.loadNpmTasks('grunt-contrib-watch');
 
+    // Report raw and gzipped sizes of the built files and record them in build-sizes.json, so that any growth
+    // shows up in the diff.  Fails if a file is over its budget.
+    grunt.registerMultiTask('sizes', 'Track the size of the built JavaScript', function () {
+        var zlib = require('zlib');
+        var path = require('path');
+        var budgets = grunt.config.get('size_budgets');
+        var report = {};
+        var overBudget = false;
+
+        this.filesSrc.forEach(function (file) {
+            var name = path.basename(file);
+            var content = grunt.file.read(file, {encoding: null});
+            var gzipped = zlib.gzipSync(content).length;
+
+            report[name] = {raw: content.length, gzip: gzipped};
+            grunt.log.writeln(name + ': ' + content.length + ' bytes (' + gzipped + ' gzipped)');
+
+            if (budgets[name] && content.length > budgets[name]) {
+                grunt.log.error(name + ' is over its budget of ' + budgets[name] + ' bytes');
+                overBudget = true;
+            }
+        });
+
+        grunt.file.write(this.data.dest, JSON.stringify(report, null, 2) + '\n');
+        return !overBudget;
+    });
+
     // Default task.
-    grunt.registerTask('default', ['concat', 'uglify', 'frep']);
+    grunt.registerTask('default', ['concat', 'uglify', 'frep', 'sizes']);
 };
@@ -9,5 +9,6 @@ var PouchDroid;
     DEBUG_CLASSES: ['NativeXMLHttpRequest', 'PouchDBHelper'],
     fakeLocalStorage: {}, // for pouchdb
     pouchDBs: {}, // Java user created pouch dbs,
+    replications: {} // running replications, by ReplicationHandle id
   };
 })();
@@ -42,6 +42,10 @@
         data = fixBinary(data);
         return PouchDB.utils.createBlob([data], {type: type});
       }
+    },
+
+    base64ToArrayBuffer : function(base64Str) {
+      return fixBinary(atob(base64Str));
     }
   };
 })();
\ No newline at end of file
@@ -1491,7 +1491,7 @@ function HttpPouch(opts, callback) {
     // if there is a large set of changes to be returned we can start
     // processing them quicker instead of waiting on the entire
     // set of changes to return and attempting to process them at once
-    var CHANGES_LIMIT = 25;
+    var CHANGES_LIMIT = opts.batch_size||25;
 
     if (!api.taskqueue.ready()) {
       var task = api.taskqueue.addTask('changes', arguments);
@@ -1588,14 +1588,14 @@ function HttpPouch(opts, callback) {
       params.limit = (!limit || leftToFetch > CHANGES_LIMIT) ?
         CHANGES_LIMIT : leftToFetch;
 
-      var paramStr = '?' + Object.keys(params).map(function (k) {
-        return k + '=' + params[k];
-      }).join('&');
+      var paramStr = '?' + (opts.doc_ids&&!params.filter&&(params.filter="_doc_ids"),Object.keys(params).map(function (k) {
+        return k + '=' + encodeURIComponent(params[k]);
+      }).join('&'));
 
       // Set the options for the ajax call
       var xhrOpts = {
         headers: host.headers,
-        method: 'GET',
+        method: params.filter==="_doc_ids"?"POST":"GET",body:params.filter==="_doc_ids"?{doc_ids:opts.doc_ids}:undefined,
         url: genDBUrl(host, '_changes' + paramStr),
         // _changes can take a long time to generate, especially when filtered
         timeout: null
@@ -1844,826 +1844,7 @@ HttpPouch.valid = function () {
 module.exports = HttpPouch;
 
 },{"../deps/errors":8,"../utils":16}],3:[function(require,module,exports){
-'use strict';
-
-var utils = require('../utils');
-var merge = require('../merge');
-var errors = require('../deps/errors');
-function idbError(callback) {
-  return function (event) {
-    utils.call(callback, errors.error(errors.IDB_ERROR, event.target, event.type));
-  };
-}
-
-function IdbPouch(opts, callback) {
-
-  // IndexedDB requires a versioned database structure, this is going to make
-  // it hard to dynamically create object stores if we needed to for things
-  // like views
-  var POUCH_VERSION = 1;
-
-  // The object stores created for each database
-  // DOC_STORE stores the document meta data, its revision history and state
-  var DOC_STORE = 'document-store';
-  // BY_SEQ_STORE stores a particular version of a document, keyed by its
-  // sequence id
-  var BY_SEQ_STORE = 'by-sequence';
-  // Where we store attachments
-  var ATTACH_STORE = 'attach-store';
-  // Where we store meta data
-  var META_STORE = 'meta-store';
-  // Where we detect blob support
-  var DETECT_BLOB_SUPPORT_STORE = 'detect-blob-support';
-
-
-  var name = opts.name;
-  var req = window.indexedDB.open(name, POUCH_VERSION);
-
-  if (!('openReqList' in IdbPouch)) {
-    IdbPouch.openReqList = {};
-  }
-  IdbPouch.openReqList[name] = req;
-
-  var blobSupport = null;
-
-  var instanceId = null;
-  var api = {};
-  var idb = null;
-
-  req.onupgradeneeded = function (e) {
-    var db = e.target.result;
-    var currentVersion = e.oldVersion;
-    while (currentVersion !== e.newVersion) {
-      if (currentVersion === 0) {
-        createSchema(db);
-      }
-      currentVersion++;
-    }
-  };
-
-  function createSchema(db) {
-    db.createObjectStore(DOC_STORE, {keyPath : 'id'})
-      .createIndex('seq', 'seq', {unique: true});
-    db.createObjectStore(BY_SEQ_STORE, {autoIncrement : true})
-      .createIndex('_doc_id_rev', '_doc_id_rev', {unique: true});
-    db.createObjectStore(ATTACH_STORE, {keyPath: 'digest'});
-    db.createObjectStore(META_STORE, {keyPath: 'id', autoIncrement: false});
-    db.createObjectStore(DETECT_BLOB_SUPPORT_STORE);
-  }
-
-  // From http://stackoverflow.com/questions/14967647/encode-decode-image-with-base64-breaks-image (2013-04-21)
-  function fixBinary(bin) {
-    var length = bin.length;
-    var buf = new ArrayBuffer(length);
-    var arr = new Uint8Array(buf);
-    for (var i = 0; i < length; i++) {
-      arr[i] = bin.charCodeAt(i);
-    }
-    return buf;
-  }
-
-  req.onsuccess = function (e) {
-
-    idb = e.target.result;
-
-    idb.onversionchange = function () {
-      idb.close();
-    };
-
-    var txn = idb.transaction([META_STORE, DETECT_BLOB_SUPPORT_STORE],
-                              'readwrite');
-
-    var req = txn.objectStore(META_STORE).get(META_STORE);
-
-    req.onsuccess = function (e) {
-      var meta = e.target.result || {id: META_STORE};
-      if (name + '_id' in meta) {
-        instanceId = meta[name + '_id'];
-      } else {
-        instanceId = utils.uuid();
-        meta[name + '_id'] = instanceId;
-        txn.objectStore(META_STORE).put(meta);
-      }
-
-      // detect blob support
-      try {
-        txn.objectStore(DETECT_BLOB_SUPPORT_STORE).put(utils.createBlob(), "key");
-        blobSupport = true;
-      } catch (err) {
-        blobSupport = false;
-      } finally {
-        utils.call(callback, null, api);
-      }
-    };
-  };
-
-  req.onerror = idbError(callback);
-
-  api.type = function () {
-    return 'idb';
-  };
-
-  // Each database needs a unique id so that we can store the sequence
-  // checkpoint without having other databases confuse itself.
-  api.id = function idb_id() {
-    return instanceId;
-  };
-
-  api._bulkDocs = function idb_bulkDocs(req, opts, callback) {
-    var newEdits = opts.new_edits;
-    var userDocs = req.docs;
-    // Parse the docs, give them a sequence number for the result
-    var docInfos = userDocs.map(function (doc, i) {
-      var newDoc = utils.parseDoc(doc, newEdits);
-      newDoc._bulk_seq = i;
-      return newDoc;
-    });
-
-    var docInfoErrors = docInfos.filter(function (docInfo) {
-      return docInfo.error;
-    });
-    if (docInfoErrors.length) {
-      return utils.call(callback, docInfoErrors[0]);
-    }
-
-    var results = [];
-    var docsWritten = 0;
-
-    function writeMetaData(e) {
-      var meta = e.target.result;
-      meta.updateSeq = (meta.updateSeq || 0) + docsWritten;
-      txn.objectStore(META_STORE).put(meta);
-    }
-
-    function processDocs() {
-      if (!docInfos.length) {
-        txn.objectStore(META_STORE).get(META_STORE).onsuccess = writeMetaData;
-        return;
-      }
-      var currentDoc = docInfos.shift();
-      var req = txn.objectStore(DOC_STORE).get(currentDoc.metadata.id);
-      req.onsuccess = function process_docRead(event) {
-        var oldDoc = event.target.result;
-        if (!oldDoc) {
-          insertDoc(currentDoc);
-        } else {
-          updateDoc(oldDoc, currentDoc);
-        }
-      };
-    }
-
-    function complete(event) {
-      var aresults = [];
-      results.sort(sortByBulkSeq);
-      results.forEach(function (result) {
-        delete result._bulk_seq;
-        if (result.error) {
-          aresults.push(result);
-          return;
-        }
-        var metadata = result.metadata;
-        var rev = merge.winningRev(metadata);
-
-        aresults.push({
-          ok: true,
-          id: metadata.id,
-          rev: rev
-        });
-
-        if (utils.isLocalId(metadata.id)) {
-          return;
-        }
-
-        IdbPouch.Changes.notify(name);
-        IdbPouch.Changes.notifyLocalWindows(name);
-      });
-      utils.call(callback, null, aresults);
-    }
-
-    function preprocessAttachment(att, finish) {
-      if (att.stub) {
-        return finish();
-      }
-      if (typeof att.data === 'string') {
-        var data;
-        try {
-          data = atob(att.data);
-        } catch (e) {
-          var err = errors.error(errors.BAD_ARG,
-                                "Attachments need to be base64 encoded");
-          return utils.call(callback, err);
-        }
-        att.digest = 'md5-' + utils.Crypto.MD5(data);
-        if (blobSupport) {
-          var type = att.content_type;
-          data = fixBinary(data);
-          att.data = utils.createBlob([data], {type: type});
-        }
-        return finish();
-      }
-      var reader = new FileReader();
-      reader.onloadend = function (e) {
-        att.digest = 'md5-' + utils.Crypto.MD5(this.result);
-        if (!blobSupport) {
-          att.data = btoa(this.result);
-        }
-        finish();
-      };
-      reader.readAsBinaryString(att.data);
-    }
-
-    function preprocessAttachments(callback) {
-      if (!docInfos.length) {
-        return callback();
-      }
-
-      var docv = 0;
-      docInfos.forEach(function (docInfo) {
-        var attachments = docInfo.data && docInfo.data._attachments ?
-          Object.keys(docInfo.data._attachments) : [];
-
-        if (!attachments.length) {
-          return done();
-        }
-
-        var recv = 0;
-        function attachmentProcessed() {
-          recv++;
-          if (recv === attachments.length) {
-            done();
-          }
-        }
-
-        for (var key in docInfo.data._attachments) {
-          preprocessAttachment(docInfo.data._attachments[key], attachmentProcessed);
-        }
-      });
-
-      function done() {
-        docv++;
-        if (docInfos.length === docv) {
-          callback();
-        }
-      }
-    }
-
-    function writeDoc(docInfo, callback) {
-      var err = null;
-      var recv = 0;
-      docInfo.data._id = docInfo.metadata.id;
-      docInfo.data._rev = docInfo.metadata.rev;
-
-      docsWritten++;
-
-      if (utils.isDeleted(docInfo.metadata, docInfo.metadata.rev)) {
-        docInfo.data._deleted = true;
-      }
-
-      var attachments = docInfo.data._attachments ?
-        Object.keys(docInfo.data._attachments) : [];
-
-      function collectResults(attachmentErr) {
-        if (!err) {
-          if (attachmentErr) {
-            err = attachmentErr;
-            utils.call(callback, err);
-          } else if (recv === attachments.length) {
-            finish();
-          }
-        }
-      }
-
-      function attachmentSaved(err) {
-        recv++;
-        collectResults(err);
-      }
-
-      for (var key in docInfo.data._attachments) {
-        if (!docInfo.data._attachments[key].stub) {
-          var data = docInfo.data._attachments[key].data;
-          delete docInfo.data._attachments[key].data;
-          var digest = docInfo.data._attachments[key].digest;
-          saveAttachment(docInfo, digest, data, attachmentSaved);
-        } else {
-          recv++;
-          collectResults();
-        }
-      }
-
-      function finish() {
-        docInfo.data._doc_id_rev = docInfo.data._id + "::" + docInfo.data._rev;
-        var dataReq = txn.objectStore(BY_SEQ_STORE).put(docInfo.data);
-        dataReq.onsuccess = function (e) {
-          //console.log(name + ': Wrote Document ', docInfo.metadata.id);
-          docInfo.metadata.seq = e.target.result;
-          // Current _rev is calculated from _rev_tree on read
-          delete docInfo.metadata.rev;
-          var metaDataReq = txn.objectStore(DOC_STORE).put(docInfo.metadata);
-          metaDataReq.onsuccess = function () {
-            results.push(docInfo);
-            utils.call(callback);
-          };
-        };
-      }
-
-      if (!attachments.length) {
-        finish();
-      }
-    }
-
-    function updateDoc(oldDoc, docInfo) {
-      var merged = merge.merge(oldDoc.rev_tree, docInfo.metadata.rev_tree[0], 1000);
-      var wasPreviouslyDeleted = utils.isDeleted(oldDoc);
-      var inConflict = (wasPreviouslyDeleted &&
-                        utils.isDeleted(docInfo.metadata)) ||
-        (!wasPreviouslyDeleted && newEdits && merged.conflicts !== 'new_leaf');
-
-      if (inConflict) {
-        results.push(makeErr(errors.REV_CONFLICT, docInfo._bulk_seq));
-        return processDocs();
-      }
-
-      docInfo.metadata.rev_tree = merged.tree;
-      writeDoc(docInfo, processDocs);
-    }
-
-    function insertDoc(docInfo) {
-      // Cant insert new deleted documents
-      if ('was_delete' in opts && utils.isDeleted(docInfo.metadata)) {
-        results.push(errors.MISSING_DOC);
-        return processDocs();
-      }
-      writeDoc(docInfo, processDocs);
-    }
-
-    // Insert sequence number into the error so we can sort later
-    function makeErr(err, seq) {
-      err._bulk_seq = seq;
-      return err;
-    }
-
-    function saveAttachment(docInfo, digest, data, callback) {
-      var objectStore = txn.objectStore(ATTACH_STORE);
-      var getReq = objectStore.get(digest).onsuccess = function (e) {
-        var originalRefs = e.target.result && e.target.result.refs || {};
-        var ref = [docInfo.metadata.id, docInfo.metadata.rev].join('@');
-        var newAtt = {
-          digest: digest,
-          body: data,
-          refs: originalRefs
-        };
-        newAtt.refs[ref] = true;
-        var putReq = objectStore.put(newAtt).onsuccess = function (e) {
-          utils.call(callback);
-        };
-      };
-    }
-
-    var txn;
-    preprocessAttachments(function () {
-      txn = idb.transaction([DOC_STORE, BY_SEQ_STORE, ATTACH_STORE, META_STORE],
-                            'readwrite');
-      txn.onerror = idbError(callback);
-      txn.ontimeout = idbError(callback);
-      txn.oncomplete = complete;
-
-      processDocs();
-    });
-  };
-
-  function sortByBulkSeq(a, b) {
-    return a._bulk_seq - b._bulk_seq;
-  }
-
-  // First we look up the metadata in the ids database, then we fetch the
-  // current revision(s) from the by sequence store
-  api._get = function idb_get(id, opts, callback) {
-    var doc;
-    var metadata;
-    var err;
-    var txn;
-    if (opts.ctx) {
-      txn = opts.ctx;
-    } else {
-      txn = idb.transaction([DOC_STORE, BY_SEQ_STORE, ATTACH_STORE], 'readonly');
-    }
-
-    function finish() {
-      utils.call(callback, err, {doc: doc, metadata: metadata, ctx: txn});
-    }
-
-    txn.objectStore(DOC_STORE).get(id).onsuccess = function (e) {
-      metadata = e.target.result;
-      // we can determine the result here if:
-      // 1. there is no such document
-      // 2. the document is deleted and we don't ask about specific rev
-      // When we ask with opts.rev we expect the answer to be either
-      // doc (possibly with _deleted=true) or missing error
-      if (!metadata) {
-        err = errors.MISSING_DOC;
-        return finish();
-      }
-      if (utils.isDeleted(metadata) && !opts.rev) {
-        err = errors.error(errors.MISSING_DOC, "deleted");
-        return finish();
-      }
-
-      var rev = merge.winningRev(metadata);
-      var key = metadata.id + '::' + (opts.rev ? opts.rev : rev);
-      var index = txn.objectStore(BY_SEQ_STORE).index('_doc_id_rev');
-
-      index.get(key).onsuccess = function (e) {
-        doc = e.target.result;
-        if (doc && doc._doc_id_rev) {
-          delete(doc._doc_id_rev);
-        }
-        if (!doc) {
-          err = errors.MISSING_DOC;
-          return finish();
-        }
-        finish();
-      };
-    };
-  };
-
-  api._getAttachment = function (attachment, opts, callback) {
-    var result;
-    var txn;
-    if (opts.ctx) {
-      txn = opts.ctx;
-    } else {
-      txn = idb.transaction([DOC_STORE, BY_SEQ_STORE, ATTACH_STORE], 'readonly');
-    }
-    var digest = attachment.digest;
-    var type = attachment.content_type;
-
-    txn.objectStore(ATTACH_STORE).get(digest).onsuccess = function (e) {
-      var data = e.target.result.body;
-      if (opts.encode) {
-        if (blobSupport) {
-          var reader = new FileReader();
-          reader.onloadend = function (e) {
-            result = btoa(this.result);
-            utils.call(callback, null, result);
-          };
-          reader.readAsBinaryString(data);
-        } else {
-          result = data;
-          utils.call(callback, null, result);
-        }
-      } else {
-        if (blobSupport) {
-          result = data;
-        } else {
-          data = fixBinary(atob(data));
-          result = utils.createBlob([data], {type: type});
-        }
-        utils.call(callback, null, result);
-      }
-    };
-  };
-
-  api._allDocs = function idb_allDocs(opts, callback) {
-    var start = 'startkey' in opts ? opts.startkey : false;
-    var end = 'endkey' in opts ? opts.endkey : false;
-
-    var descending = 'descending' in opts ? opts.descending : false;
-    descending = descending ? 'prev' : null;
-
-    var keyRange = start && end ? window.IDBKeyRange.bound(start, end)
-      : start ? window.IDBKeyRange.lowerBound(start)
-      : end ? window.IDBKeyRange.upperBound(end) : null;
-
-    var transaction = idb.transaction([DOC_STORE, BY_SEQ_STORE], 'readonly');
-    transaction.oncomplete = function () {
-      if ('keys' in opts) {
-        opts.keys.forEach(function (key) {
-          if (key in resultsMap) {
-            results.push(resultsMap[key]);
-          } else {
-            results.push({"key": key, "error": "not_found"});
-          }
-        });
-        if (opts.descending) {
-          results.reverse();
-        }
-      }
-      utils.call(callback, null, {
-        total_rows: results.length,
-        offset: opts.skip,
-        rows: ('limit' in opts) ? results.slice(opts.skip, opts.limit + opts.skip) :
-          (opts.skip > 0) ? results.slice(opts.skip) : results
-      });
-    };
-
-    var oStore = transaction.objectStore(DOC_STORE);
-    var oCursor = descending ? oStore.openCursor(keyRange, descending)
-      : oStore.openCursor(keyRange);
-    var results = [];
-    var resultsMap = {};
-    oCursor.onsuccess = function (e) {
-      if (!e.target.result) {
-        return;
-      }
-      var cursor = e.target.result;
-      var metadata = cursor.value;
-      // If opts.keys is set we want to filter here only those docs with
-      // key in opts.keys. With no performance tests it is difficult to
-      // guess if iteration with filter is faster than many single requests
-      function allDocsInner(metadata, data) {
-        if (utils.isLocalId(metadata.id)) {
-          return cursor['continue']();
-        }
-        var doc = {
-          id: metadata.id,
-          key: metadata.id,
-          value: {
-            rev: merge.winningRev(metadata)
-          }
-        };
-        if (opts.include_docs) {
-          doc.doc = data;
-          doc.doc._rev = merge.winningRev(metadata);
-          if (doc.doc._doc_id_rev) {
-            delete(doc.doc._doc_id_rev);
-          }
-          if (opts.conflicts) {
-            doc.doc._conflicts = merge.collectConflicts(metadata);
-          }
-          for (var att in doc.doc._attachments) {
-            doc.doc._attachments[att].stub = true;
-          }
-        }
-        if ('keys' in opts) {
-          if (opts.keys.indexOf(metadata.id) > -1) {
-            if (utils.isDeleted(metadata)) {
-              doc.value.deleted = true;
-              doc.doc = null;
-            }
-            resultsMap[doc.id] = doc;
-          }
-        } else {
-          if (!utils.isDeleted(metadata)) {
-            results.push(doc);
-          }
-        }
-        cursor['continue']();
-      }
-
-      if (!opts.include_docs) {
-        allDocsInner(metadata);
-      } else {
-        var index = transaction.objectStore(BY_SEQ_STORE).index('_doc_id_rev');
-        var mainRev = merge.winningRev(metadata);
-        var key = metadata.id + "::" + mainRev;
-        index.get(key).onsuccess = function (event) {
-          allDocsInner(cursor.value, event.target.result);
-        };
-      }
-    };
-  };
-
-  api._info = function idb_info(callback) {
-    var count = 0;
-    var update_seq = 0;
-    var txn = idb.transaction([DOC_STORE, META_STORE], 'readonly');
-
-    function fetchUpdateSeq(e) {
-      update_seq = e.target.result && e.target.result.updateSeq || 0;
-    }
-
-    function countDocs(e) {
-      var cursor = e.target.result;
-      if (!cursor) {
-        txn.objectStore(META_STORE).get(META_STORE).onsuccess = fetchUpdateSeq;
-        return;
-      }
-      if (cursor.value.deleted !== true) {
-        count++;
-      }
-      cursor['continue']();
-    }
-
-    txn.oncomplete = function () {
-      callback(null, {
-        db_name: name,
-        doc_count: count,
-        update_seq: update_seq
-      });
-    };
-
-    txn.objectStore(DOC_STORE).openCursor().onsuccess = countDocs;
-  };
-
-  api._changes = function idb_changes(opts) {
-    //console.log(name + ': Start Changes Feed: continuous=' + opts.continuous);
-
-    if (opts.continuous) {
-      var id = name + ':' + utils.uuid();
-      opts.cancelled = false;
-      IdbPouch.Changes.addListener(name, id, api, opts);
-      IdbPouch.Changes.notify(name);
-      return {
-        cancel: function () {
-          //console.log(name + ': Cancel Changes Feed');
-          opts.cancelled = true;
-          IdbPouch.Changes.removeListener(name, id);
-        }
-      };
-    }
-
-    var descending = opts.descending ? 'prev' : null;
-    var last_seq = 0;
-
-    // Ignore the `since` parameter when `descending` is true
-    opts.since = opts.since && !descending ? opts.since : 0;
-
-    var results = [], resultIndices = {}, dedupResults = [];
-    var txn;
-
-    function fetchChanges() {
-      txn = idb.transaction([DOC_STORE, BY_SEQ_STORE]);
-      txn.oncomplete = onTxnComplete;
-
-      var req;
-
-      if (descending) {
-        req = txn.objectStore(BY_SEQ_STORE)
-            .openCursor(window.IDBKeyRange.lowerBound(opts.since, true), descending);
-      } else {
-        req = txn.objectStore(BY_SEQ_STORE)
-            .openCursor(window.IDBKeyRange.lowerBound(opts.since, true));
-      }
-
-      req.onsuccess = onsuccess;
-      req.onerror = onerror;
-    }
-
-    fetchChanges();
-
-    function onsuccess(event) {
-      if (!event.target.result) {
-        // Filter out null results casued by deduping
-        for (var i = 0, l = results.length; i < l; i++) {
-          var result = results[i];
-          if (result) {
-            dedupResults.push(result);
-          }
-        }
-        return false;
-      }
-
-      var cursor = event.target.result;
-
-      // Try to pre-emptively dedup to save us a bunch of idb calls
-      var changeId = cursor.value._id;
-      var changeIdIndex = resultIndices[changeId];
-      if (changeIdIndex !== undefined) {
-        results[changeIdIndex].seq = cursor.key;
-        // update so it has the later sequence number
-        results.push(results[changeIdIndex]);
-        results[changeIdIndex] = null;
-        resultIndices[changeId] = results.length - 1;
-        return cursor['continue']();
-      }
-
-      var index = txn.objectStore(DOC_STORE);
-      index.get(cursor.value._id).onsuccess = function (event) {
-        var metadata = event.target.result;
-        if (utils.isLocalId(metadata.id)) {
-          return cursor['continue']();
-        }
-
-        if (last_seq < metadata.seq) {
-          last_seq = metadata.seq;
-        }
-
-        var mainRev = merge.winningRev(metadata);
-        var key = metadata.id + "::" + mainRev;
-        var index = txn.objectStore(BY_SEQ_STORE).index('_doc_id_rev');
-        index.get(key).onsuccess = function (docevent) {
-          var doc = docevent.target.result;
-          delete doc['_doc_id_rev'];
-
-          doc._rev = mainRev;
-          var change = opts.processChange(doc, metadata, opts);
-          change.seq = cursor.key;
-
-          // Dedupe the changes feed
-          var changeId = change.id, changeIdIndex = resultIndices[changeId];
-          if (changeIdIndex !== undefined) {
-            results[changeIdIndex] = null;
-          }
-          results.push(change);
-          resultIndices[changeId] = results.length - 1;
-          cursor['continue']();
-        };
-      };
-    }
-
-    function onTxnComplete() {
-      utils.processChanges(opts, dedupResults, last_seq);
-    }
-
-    function onerror(error) {
-      // TODO: shouldn't we pass some params here?
-      utils.call(opts.complete);
-    }
-  };
-
-  api._close = function (callback) {
-    if (idb === null) {
-      return utils.call(callback, errors.NOT_OPEN);
-    }
-
-    // https://developer.mozilla.org/en-US/docs/IndexedDB/IDBDatabase#close
-    // "Returns immediately and closes the connection in a separate thread..."
-    idb.close();
-    utils.call(callback, null);
-  };
-
-  api._getRevisionTree = function (docId, callback) {
-    var txn = idb.transaction([DOC_STORE], 'readonly');
-    var req = txn.objectStore(DOC_STORE).get(docId);
-    req.onsuccess = function (event) {
-      var doc = event.target.result;
-      if (!doc) {
-        utils.call(callback, errors.MISSING_DOC);
-      } else {
-        utils.call(callback, null, doc.rev_tree);
-      }
-    };
-  };
-
-  // This function removes revisions of document docId
-  // which are listed in revs and sets this document
-  // revision to to rev_tree
-  api._doCompaction = function (docId, rev_tree, revs, callback) {
-    var txn = idb.transaction([DOC_STORE, BY_SEQ_STORE], 'readwrite');
-
-    var index = txn.objectStore(DOC_STORE);
-    index.get(docId).onsuccess = function (event) {
-      var metadata = event.target.result;
-      metadata.rev_tree = rev_tree;
-
-      var count = revs.length;
-      revs.forEach(function (rev) {
-        var index = txn.objectStore(BY_SEQ_STORE).index('_doc_id_rev');
-        var key = docId + "::" + rev;
-        index.getKey(key).onsuccess = function (e) {
-          var seq = e.target.result;
-          if (!seq) {
-            return;
-          }
-          var req = txn.objectStore(BY_SEQ_STORE)['delete'](seq);
-
-          count--;
-          if (!count) {
-            txn.objectStore(DOC_STORE).put(metadata);
-          }
-        };
-      });
-    };
-    txn.oncomplete = function () {
-      utils.call(callback);
-    };
-  };
-
-  return api;
-}
-
-IdbPouch.valid = function idb_valid() {
-  return typeof window !== 'undefined' && !!window.indexedDB;
-};
-
-IdbPouch.destroy = function idb_destroy(name, opts, callback) {
-  if (!('openReqList' in IdbPouch)) {
-    IdbPouch.openReqList = {};
-  }
-  IdbPouch.Changes.clearListeners(name);
-
-  //Close open request for "name" database to fix ie delay.
-  if (IdbPouch.openReqList[name] && IdbPouch.openReqList[name].result) {
-    IdbPouch.openReqList[name].result.close();
-  }
-  var req = window.indexedDB.deleteDatabase(name);
-
-  req.onsuccess = function () {
-    //Remove open request from the list.
-    if (IdbPouch.openReqList[name]) {
-      IdbPouch.openReqList[name] = null;
-    }
-    utils.call(callback, null);
-  };
-
-  req.onerror = idbError(callback);
-};
-
-IdbPouch.Changes = new utils.Changes();
-
-module.exports = IdbPouch;
-
-},{"../deps/errors":8,"../merge":13,"../utils":16}],4:[function(require,module,exports){
+},{}],4:[function(require,module,exports){
 'use strict';
 
 var utils = require('../utils');
@@ -3142,7 +2323,7 @@ function webSqlPouch(opts, callback) {
   }
 
   api._allDocs = function (opts, callback) {
-    var results = [];
+    var lastKey=null,results = [];
     var resultsMap = {};
     var start = 'startkey' in opts ? opts.startkey : false;
     var end = 'endkey' in opts ? opts.endkey : false;
@@ -3167,11 +2348,11 @@ function webSqlPouch(opts, callback) {
         sql += (start ? ' AND ' : ' WHERE ') + DOC_STORE + '.id <= ?';
         sqlArgs.push(end);
       }
-      sql += ' ORDER BY ' + DOC_STORE + '.id ' + (descending ? 'DESC' : 'ASC');
+      sql += ' ORDER BY ' + DOC_STORE + '.id ' + (descending ? 'DESC' : 'ASC')+(opts.scan_limit?" LIMIT "+(opts.scan_limit|0):"");
     }
 
     db.transaction(function (tx) {
-      tx.executeSql(sql, sqlArgs, function (tx, result) {
+      tx.executeSql(sql, sqlArgs, function (tx, result) {if(result.rows.length){lastKey=result.rows.item(result.rows.length-1).id;}
         for (var i = 0, l = result.rows.length; i < l; i++) {
           var doc = result.rows.item(i);
           var metadata = JSON.parse(doc.metadata);
@@ -3222,7 +2403,7 @@ function webSqlPouch(opts, callback) {
         }
       }
       utils.call(callback, null, {
-        total_rows: results.length,
+        total_rows: results.length,last_key:opts.scan_limit?lastKey:undefined,
         offset: opts.skip,
         rows: ('limit' in opts) ? results.slice(opts.skip, opts.limit + opts.skip) :
           (opts.skip > 0) ? results.slice(opts.skip) : results
@@ -4261,15 +3442,11 @@ var httpAdapter = require('./adapters/http');
 PouchDB.adapter('http', httpAdapter);
 PouchDB.adapter('https', httpAdapter);
 
-PouchDB.adapter('idb', require('./adapters/idb'));
+
 PouchDB.adapter('websql', require('./adapters/websql'));
 PouchDB.plugin('mapreduce', require('pouchdb-mapreduce'));
 
-if (!process.browser) {
-  var ldbAdapter = require('./adapters/leveldb');
-  PouchDB.adapter('ldb', ldbAdapter);
-  PouchDB.adapter('leveldb', ldbAdapter);
-}
+if (!1){}
 
 },{"./adapters/http":2,"./adapters/idb":3,"./adapters/leveldb":18,"./adapters/websql":4,"./deps/ajax":6,"./deps/errors":8,"./deps/extend":9,"./replicate":14,"./setup":15,"./utils":16,"./version":17,"__browserify_process":19,"pouchdb-mapreduce":20}],13:[function(require,module,exports){
 'use strict';
@@ -4608,7 +3785,7 @@ function RequestManager(promise) {
 // to this replication
 
 function genReplicationId(src, target, opts) {
-  var filterFun = opts.filter ? opts.filter.toString() : '';
+  var filterFun=(opts.filter?opts.filter.toString():"")+(opts.doc_ids?JSON.stringify(opts.doc_ids):"")+(opts.query_params?JSON.stringify(opts.query_params):"")+(opts.id_prefix||"");
   return '_local/' + PouchUtils.Crypto.MD5(src.id() + target.id() + filterFun);
 }
 
@@ -4669,7 +3846,7 @@ function replicate(src, target, opts, promise) {
     docs_written: 0
   };
 
-  function docsWritten(err, res, len) {
+  function docsWritten(err, res, len) {if(opts.onBatch){opts.onBatch(err,{docs_written:len,total_docs_read:result.docs_read,total_docs_written:result.docs_written+len,pending_revs:pendingRevs-len,last_seq:last_seq});}
     if (opts.onChange) {
       for (var i = 0; i < len; i++) {
         /*jshint validthis:true */
@@ -4784,7 +3961,7 @@ function replicate(src, target, opts, promise) {
       style: 'all_docs',
       onChange: onChange,
       complete: complete,
-      doc_ids: doc_ids
+      doc_ids: doc_ids,batch_size:opts.batch_size,id_prefix:opts.id_prefix
     };
 
     if (opts.filter) {
@@ -5202,7 +4379,7 @@ exports.filterChange = function (opts) {
     if (opts.filter && hasFilter && !opts.filter.call(this, change.doc, req)) {
       return false;
     }
-    if (opts.doc_ids && opts.doc_ids.indexOf(change.id) === -1) {
+    if(opts.id_prefix&&change.id.indexOf(opts.id_prefix)!==0){return false;}if (opts.doc_ids && opts.doc_ids.indexOf(change.id) === -1) {
       return false;
     }
     if (!opts.include_docs) {
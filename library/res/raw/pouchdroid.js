@@ -59,6 +59,7 @@ var PouchDroid;
     DEBUG_CLASSES: ['NativeXMLHttpRequest', 'PouchDBHelper'],
     fakeLocalStorage: {}, // for pouchdb
     pouchDBs: {}, // Java user created pouch dbs,
+    replications: {} // running replications, by ReplicationHandle id
   };
 })();
 ;/**
@@ -443,6 +444,10 @@ var PouchDroid;
         data = fixBinary(data);
         return PouchDB.utils.createBlob([data], {type: type});
       }
+    },
+
+    base64ToArrayBuffer : function(base64Str) {
+      return fixBinary(atob(base64Str));
     }
   };
 })();;/**
@@ -480,23 +485,46 @@ var PouchDroid;
     self.response = null; // used if binary;
     self.responseText = null; // used if non-binary;
     self.requestHeaders = {};
+    self.responseHeaders = {};
     self.upload = {};
+    self.inFlight = false;
+    self.aborted = false;
   }
 
-  NativeXMLHttpRequest.prototype.onNativeProgress = function (isUpload) {
-    // TODO: actually implement the progress event spec: http://www.w3.org/TR/progress-events/
-    // TODO: actually call this method!  For now this method is never called
-    var self = this;
+  function readBinaryResponse(self) {
+    // the bytes stay on the Java side until we ask for them, so they never get
+    // embedded in a javascript: url or JSON-escaped
+    var base64 = XhrJavascriptInterface.readBinary(self.id);
+    var buffer = PouchDroid.Util.base64ToArrayBuffer(base64 || '');
 
-    if (isUpload) {
-      if (self.onprogress && typeof self.onprogress === 'function') {
-        self.onprogress.call(null);
-      }
-    } else { // download
-      if (self.upload.onprogress && typeof self.upload.onprogress === 'function') {
-        self.upload.onprogress.call(null);
+    if (self.responseType === 'blob') {
+      return PouchDB.utils.createBlob([buffer], {type: self.getResponseHeader('Content-Type')});
+    }
+    return buffer;
+  }
+
+  NativeXMLHttpRequest.prototype.onNativeProgress = function (isUpload, chunk, loaded, total) {
+    // called for streamed responses (i.e. _changes), with each chunk of the body as it arrives
+    var self = this;
+    var target = isUpload ? self.upload : self;
+
+    if (!isUpload) {
+      self.readyState = STATES.LOADING;
+      self.responseText = (self.responseText || '') + chunk;
+      self.response = self.responseText;
+      if (typeof self.onreadystatechange === 'function') {
+        self.callOnReadyStateChange();
       }
     }
+
+    // also keeps PouchDB's ajax() timeout from firing while a big response is still coming in
+    if (typeof target.onprogress === 'function') {
+      target.onprogress.call(null, {
+        lengthComputable: total >= 0,
+        loaded: loaded,
+        total: total >= 0 ? total : 0
+      });
+    }
   };
 
   NativeXMLHttpRequest.prototype.callOnReadyStateChange = function () {
@@ -511,18 +539,29 @@ var PouchDroid;
     debug('called onreadystatechange.');
   };
 
-  NativeXMLHttpRequest.prototype.onNativeCallback = function (err, statusCode, content) {
+  NativeXMLHttpRequest.prototype.onNativeCallback = function (err, statusCode, content, headers, binary, streamed) {
     var self = this;
-    debug('onNativeCallback(' + statusCode + ', ' + content + ')');
+    debug('onNativeCallback(' + statusCode + ', ' + (binary ? '<binary>' : content) + ')');
 
     if (err) {
       // TODO: do something better?
       window.console.log('XHR error: ' + JSON.stringify(err));
     }
 
+    self.inFlight = false;
     self.readyState = STATES.DONE;
     self.status = statusCode;
-    self.responseText = content;
+    self.responseHeaders = headers || {};
+    if (binary) {
+      self.response = readBinaryResponse(self);
+    } else if (streamed) {
+      // the body already arrived through onNativeProgress()
+      self.responseText = self.responseText || '';
+      self.response = self.responseText;
+    } else {
+      self.responseText = content;
+      self.response = content;
+    }
 
     self.callOnReadyStateChange();
 
@@ -545,12 +584,18 @@ var PouchDroid;
 
     debug('abort()');
 
-    // notify Java
-    var selfStringified = JSON.stringify(self);
+    if (!self.inFlight) {
+      // either it hasn't been sent yet, in which case send() will bail out, or it's already done,
+      // in which case Java has nothing left to abort
+      self.aborted = self.readyState !== STATES.DONE;
+      return;
+    }
+
+    // notify Java, which only needs the id (the response so far could be megabytes of _changes)
     try {
-      XhrJavascriptInterface.abort(selfStringified);
+      XhrJavascriptInterface.abort(self.id);
     } catch (error) {
-      window.console.log('failed to call XhrJavascriptInterface.abort() with selfStringified ' + selfStringified);
+      window.console.log('failed to call XhrJavascriptInterface.abort() for xhr ' + self.id);
     }
 
   };
@@ -571,6 +616,21 @@ var PouchDroid;
     return self.requestHeaders[key];
   };
 
+  NativeXMLHttpRequest.prototype.getResponseHeader = function (key) {
+    var self = this;
+
+    var value = self.responseHeaders[key.toLowerCase()];
+    return typeof value === 'undefined' ? null : value;
+  };
+
+  NativeXMLHttpRequest.prototype.getAllResponseHeaders = function () {
+    var self = this;
+
+    return Object.keys(self.responseHeaders).map(function (key) {
+      return key + ': ' + self.responseHeaders[key];
+    }).join('\r\n');
+  };
+
   NativeXMLHttpRequest.prototype.send = function (body) {
     var self = this;
 
@@ -594,6 +654,12 @@ var PouchDroid;
 
     PouchDroid.NativeXMLHttpRequests[self.id] = self;
 
+    if (self.aborted) {
+      self.onNativeCallback('aborted', 0, null, {}, false, false);
+      return;
+    }
+    self.inFlight = true;
+
     var selfStringified = JSON.stringify(self);
 
     debug('send(' + selfStringified + ',' + body + ')');
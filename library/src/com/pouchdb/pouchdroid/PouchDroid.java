@@ -86,14 +86,11 @@ public class PouchDroid {
 
     private void loadInitialJavascript() {
         
-        // in Android 4.4+, IndexedDB is now available, so we need to remove it from the Pouch adapter list
-        // TODO: compile PouchDB without idb at all
-        String removeIdb = "delete PouchDB.adapters.idb;";
-        
+        // PouchDB is built without the idb/leveldb adapters (see js/Gruntfile.js), so even in Android 4.4+,
+        // where IndexedDB is available, it'll only ever pick our websql shim
         loadJavascript(TextUtils.join(";", Arrays.asList(
                 ResourceUtil.loadTextFile(activity, USE_MINIFIED_COUCHDROID ? R.raw.pouchdroid_min : R.raw.pouchdroid),
-                (ResourceUtil.loadTextFile(activity, USE_MINIFIED_POUCH ? R.raw.pouchdb_min : R.raw.pouchdb)),
-                removeIdb
+                (ResourceUtil.loadTextFile(activity, USE_MINIFIED_POUCH ? R.raw.pouchdb_min : R.raw.pouchdb))
                 )));
     }
     
@@ -0,0 +1,84 @@
+package com.pouchdb.pouchdroid.migration;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import com.pouchdb.pouchdroid.util.UtilLogger;
+
+/**
+ * Decides how many rows go into each migration batch.  Every batch costs a couple of round trips over the
+ * JavaScript bridge, so bigger is faster, but the whole batch is in memory several times over on its way into PouchDB
+ * (the documents, their JSON, the JavaScript string...), so on a small heap it mustn't get too big.
+ *
+ * <p/>So batches are sized in bytes rather than rows: starting small, each batch is sized to take about
+ * {@link #TARGET_BATCH_MILLIS} at the rate the previous ones went, growing or shrinking by at most a factor of two at a
+ * time, and never more than a fraction of the heap (by {@link ActivityManager#getMemoryClass()}) or of what's actually
+ * free right now.
+ */
+public class MigrationBatchSizer {
+
+    private static UtilLogger log = new UtilLogger(MigrationBatchSizer.class);
+
+    /* package */ static final long TARGET_BATCH_MILLIS = 1000;
+    private static final int HEAP_FRACTION = 64; // a batch's raw size vs. the heap; it takes up several times that
+    private static final int FREE_HEAP_FRACTION = 8; // vs. the heap that's free right now
+    private static final int MIN_BATCH_BYTES = 4 * 1024;
+    private static final int INITIAL_BATCH_BYTES = 16 * 1024;
+    private static final int INITIAL_BATCH_ROWS = 25;
+    private static final int MAX_BATCH_ROWS = 5000;
+
+    private final long maxBatchBytes;
+    private long batchBytes = INITIAL_BATCH_BYTES;
+    private double bytesPerRow; // 0 until we've seen a batch
+
+    /* package */ MigrationBatchSizer(Context context) {
+        long heapBytes = Runtime.getRuntime().maxMemory();
+        if (context != null) {
+            ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            heapBytes = Math.min(heapBytes, activityManager.getMemoryClass() * 1024L * 1024L);
+        }
+        this.maxBatchBytes = Math.max(MIN_BATCH_BYTES, heapBytes / HEAP_FRACTION);
+        log.d("heap is %d bytes, so batches are at most %d bytes", heapBytes, maxBatchBytes);
+    }
+
+    /**
+     * Approximate size of the next batch, in bytes.  The batch is done once its rows add up to this much.
+     */
+    public synchronized long getBatchBytes() {
+        return Math.min(batchBytes, getFreeHeapBytes() / FREE_HEAP_FRACTION);
+    }
+
+    /**
+     * Upper bound on the number of rows in the next batch, for the query's limit.
+     */
+    public synchronized int getBatchRows() {
+        if (bytesPerRow == 0) {
+            return INITIAL_BATCH_ROWS;
+        }
+        // a bit of slack, so that the byte count rather than the limit usually ends the batch
+        return (int) Math.max(1, Math.min(MAX_BATCH_ROWS, 2 * getBatchBytes() / bytesPerRow));
+    }
+
+    /**
+     * Report how the last batch went.  Since batches are read while the previous one is being written, the time is
+     * the time since the previous batch was written, rather than the time this one took from start to end.
+     */
+    public synchronized void onBatch(int numRows, long numBytes, long elapsedMillis) {
+        if (numRows == 0) {
+            return;
+        }
+        double batchBytesPerRow = (double) numBytes / numRows;
+        bytesPerRow = bytesPerRow == 0 ? batchBytesPerRow : (bytesPerRow + batchBytesPerRow) / 2;
+
+        long targetBytes = numBytes * TARGET_BATCH_MILLIS / Math.max(1, elapsedMillis);
+        targetBytes = Math.max(batchBytes / 2, Math.min(batchBytes * 2, targetBytes));
+        batchBytes = Math.max(MIN_BATCH_BYTES, Math.min(maxBatchBytes, targetBytes));
+        log.d("batch of %d rows (%d bytes) took %d ms; next one is %d bytes", numRows, numBytes, elapsedMillis,
+                batchBytes);
+    }
+
+    private static long getFreeHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+}
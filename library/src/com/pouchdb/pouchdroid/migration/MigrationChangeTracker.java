@@ -0,0 +1,213 @@
+package com.pouchdb.pouchdroid.migration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+
+import com.pouchdb.pouchdroid.util.UtilLogger;
+
+/**
+ * Keeps track of which rows have changed since the last migration, so that the next one only has to migrate those.
+ * Triggers on each migrated table log the ids of inserted, updated and deleted rows to a change log table, and a
+ * state table remembers how far into the log each table has been migrated, per PouchDB.  Both tables, and the
+ * triggers, live in the migrated SQLite database itself, so that no change can slip by unnoticed.
+ *
+ * <p/>If the triggers are missing (e.g. because the app dropped and recreated the table), or the table's id columns
+ * have changed, then the table is migrated in full again.
+ */
+public class MigrationChangeTracker {
+
+    private static UtilLogger log = new UtilLogger(MigrationChangeTracker.class);
+
+    private static final String PREFIX = "pouchdroid_";
+    private static final String CHANGES_TABLE = PREFIX + "migration_changes";
+    private static final String STATE_TABLE = PREFIX + "migration_state";
+    private static final String[] TRIGGER_SUFFIXES = {"_insert", "_update", "_delete"};
+
+    private final SQLiteDatabase sqliteDatabase;
+
+    /* package */ MigrationChangeTracker(SQLiteDatabase sqliteDatabase) {
+        this.sqliteDatabase = sqliteDatabase;
+        sqliteDatabase.execSQL("create table if not exists " + CHANGES_TABLE
+                + " (seq integer primary key autoincrement, table_name text not null, row_id text)");
+        sqliteDatabase.execSQL("create table if not exists " + STATE_TABLE
+                + " (pouch_db text not null, table_name text not null, id_columns text not null,"
+                + " last_seq integer not null, primary key (pouch_db, table_name))");
+    }
+
+    /**
+     * Create the table's triggers, if they're not already there.
+     *
+     * @return false if they were already there, i.e. if every change since they were created has been logged
+     */
+    /* package */ boolean installTriggers(SqliteTable sqliteTable) {
+        String tableName = sqliteTable.getName();
+        if (countTriggers(tableName) == TRIGGER_SUFFIXES.length) {
+            return false;
+        }
+        log.i("tracking changes to table %s", tableName);
+        String newRowId = getRowIdExpression(sqliteTable, "new.");
+        String oldRowId = getRowIdExpression(sqliteTable, "old.");
+        sqliteDatabase.beginTransaction();
+        try {
+            dropTriggers(tableName);
+            sqliteDatabase.execSQL(createTrigger(tableName, "_insert", "after insert", logChange(tableName, newRowId)));
+            // the id may have changed, in which case the old doc has to go
+            sqliteDatabase.execSQL(createTrigger(tableName, "_update", "after update",
+                    logChange(tableName, oldRowId) + logChange(tableName, newRowId)));
+            sqliteDatabase.execSQL(createTrigger(tableName, "_delete", "after delete", logChange(tableName, oldRowId)));
+            sqliteDatabase.setTransactionSuccessful();
+        } finally {
+            sqliteDatabase.endTransaction();
+        }
+        return true;
+    }
+
+    /**
+     * The last change to the table that's already in the PouchDB, or -1 if it has to be migrated in full.
+     */
+    /* package */ long getLastSeq(String pouchDBName, SqliteTable sqliteTable) {
+        Cursor cursor = sqliteDatabase.rawQuery("select id_columns, last_seq from " + STATE_TABLE
+                + " where pouch_db = ? and table_name = ?", new String[] {pouchDBName, sqliteTable.getName()});
+        try {
+            if (!cursor.moveToNext() || !cursor.getString(0).equals(getIdColumns(sqliteTable))) {
+                return -1;
+            }
+            return cursor.getLong(1);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * The latest change logged so far, for any table.
+     */
+    /* package */ long getMaxSeq() {
+        return DatabaseUtils.longForQuery(sqliteDatabase, "select coalesce(max(seq), 0) from " + CHANGES_TABLE,
+                null);
+    }
+
+    /* package */ int countChangedRowIds(SqliteTable sqliteTable, long sinceSeq, long maxSeq) {
+        return (int) DatabaseUtils.longForQuery(sqliteDatabase, "select count(distinct row_id) from " + CHANGES_TABLE
+                + " where table_name = ? and seq > ? and seq <= ?",
+                new String[] {sqliteTable.getName(), Long.toString(sinceSeq), Long.toString(maxSeq)});
+    }
+
+    /**
+     * The ids (as in the id columns, concatenated) of the rows that changed after <code>sinceSeq</code> and up to
+     * <code>maxSeq</code>, in order, starting after <code>lastRowId</code> (if it's not null).
+     */
+    /* package */ List<String> getChangedRowIds(SqliteTable sqliteTable, long sinceSeq, long maxSeq,
+            String lastRowId, int limit) {
+        List<String> selectionArgs = new ArrayList<String>();
+        selectionArgs.add(sqliteTable.getName());
+        selectionArgs.add(Long.toString(sinceSeq));
+        selectionArgs.add(Long.toString(maxSeq));
+        StringBuilder sql = new StringBuilder("select distinct row_id from ").append(CHANGES_TABLE)
+                .append(" where table_name = ? and seq > ? and seq <= ? and row_id is not null");
+        if (lastRowId != null) {
+            sql.append(" and row_id > ?");
+            selectionArgs.add(lastRowId);
+        }
+        sql.append(" order by row_id limit ").append(limit);
+
+        List<String> result = new ArrayList<String>();
+        Cursor cursor = sqliteDatabase.rawQuery(sql.toString(), selectionArgs.toArray(new String[selectionArgs.size()]));
+        try {
+            while (cursor.moveToNext()) {
+                result.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    /**
+     * Remember that every change to the table up to <code>lastSeq</code> is in the PouchDB, and forget the changes
+     * that every PouchDB has.
+     */
+    /* package */ void saveState(String pouchDBName, SqliteTable sqliteTable, long lastSeq) {
+        sqliteDatabase.beginTransaction();
+        try {
+            sqliteDatabase.execSQL("insert or replace into " + STATE_TABLE
+                    + " (pouch_db, table_name, id_columns, last_seq) values (?, ?, ?, ?)",
+                    new Object[] {pouchDBName, sqliteTable.getName(), getIdColumns(sqliteTable), lastSeq});
+            sqliteDatabase.execSQL("delete from " + CHANGES_TABLE + " where table_name = ? and seq <= (select"
+                    + " min(last_seq) from " + STATE_TABLE + " where table_name = ?)",
+                    new Object[] {sqliteTable.getName(), sqliteTable.getName()});
+            sqliteDatabase.setTransactionSuccessful();
+        } finally {
+            sqliteDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * The expression for the id of a row, which is what its doc id ends with.
+     */
+    /* package */ static String getRowIdExpression(SqliteTable sqliteTable, String qualifier) {
+        List<String> columns = new ArrayList<String>();
+        for (String idColumn : sqliteTable.getIdColumns()) {
+            columns.add(qualifier + idColumn);
+        }
+        return TextUtils.join(" || ", columns);
+    }
+
+    /**
+     * Stop tracking changes: drop the triggers and tables that incremental migrations added to the database.  The
+     * next migration, incremental or not, migrates every table in full.
+     */
+    public static void removeChangeTracking(SQLiteDatabase sqliteDatabase) {
+        List<String> triggers = new ArrayList<String>();
+        Cursor cursor = sqliteDatabase.rawQuery("select name from sqlite_master where type = 'trigger' and name like ?",
+                new String[] {PREFIX + "%"});
+        try {
+            while (cursor.moveToNext()) {
+                triggers.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        for (String trigger : triggers) {
+            sqliteDatabase.execSQL("drop trigger if exists " + trigger);
+        }
+        sqliteDatabase.execSQL("drop table if exists " + CHANGES_TABLE);
+        sqliteDatabase.execSQL("drop table if exists " + STATE_TABLE);
+    }
+
+    private int countTriggers(String tableName) {
+        List<String> triggerNames = new ArrayList<String>();
+        for (String suffix : TRIGGER_SUFFIXES) {
+            triggerNames.add(DatabaseUtils.sqlEscapeString(PREFIX + tableName + suffix));
+        }
+        return (int) DatabaseUtils.longForQuery(sqliteDatabase, "select count(*) from sqlite_master where type = "
+                + "'trigger' and tbl_name = ? and name in (" + TextUtils.join(", ", triggerNames) + ")",
+                new String[] {tableName});
+    }
+
+    private void dropTriggers(String tableName) {
+        for (String suffix : TRIGGER_SUFFIXES) {
+            sqliteDatabase.execSQL("drop trigger if exists " + PREFIX + tableName + suffix);
+        }
+    }
+
+    private static String createTrigger(String tableName, String suffix, String event, String body) {
+        return new StringBuilder("create trigger ").append(PREFIX).append(tableName).append(suffix).append(" ")
+                .append(event).append(" on ").append(tableName).append(" begin ").append(body).append(" end")
+                .toString();
+    }
+
+    private static String logChange(String tableName, String rowIdExpression) {
+        return new StringBuilder("insert into ").append(CHANGES_TABLE).append(" (table_name, row_id) values (")
+                .append(DatabaseUtils.sqlEscapeString(tableName)).append(", ").append(rowIdExpression).append(");")
+                .toString();
+    }
+
+    private static String getIdColumns(SqliteTable sqliteTable) {
+        return TextUtils.join(",", sqliteTable.getIdColumns());
+    }
+}
@@ -0,0 +1,105 @@
+package com.pouchdb.pouchdroid.migration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+
+import com.pouchdb.pouchdroid.util.JsonUtil;
+
+/**
+ * Remembers how far a migration got into each table, so that if the process dies halfway through (an OOM kill, the
+ * user swiping the app away...), the next migration picks up where it left off instead of starting over.  A
+ * checkpoint is saved after every batch that's been written to PouchDB, and they're all cleared once the migration
+ * has finished.
+ *
+ * <p/>A resumed table is only read from its checkpoint on, so changes to rows that had already been migrated are left
+ * for the next migration.
+ */
+public class MigrationCheckpointStore {
+
+    private static final String DATABASE_NAME = "pouchdroid_migration_checkpoints.db";
+
+    private final SQLiteDatabase sqliteDatabase;
+    private final String pouchDBName;
+
+    /* package */ MigrationCheckpointStore(Context context, String pouchDBName) {
+        this.pouchDBName = pouchDBName;
+        this.sqliteDatabase = context.openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null);
+        sqliteDatabase.execSQL("create table if not exists checkpoints (pouch_db text not null, "
+                + "doc_id_prefix text not null, key_columns text not null, last_key text not null, "
+                + "last_key_types text not null, num_rows_read integer not null, max_seq integer not null, "
+                + "primary key (pouch_db, doc_id_prefix))");
+    }
+
+    /**
+     * The checkpoint of the table whose doc ids start with <code>docIdPrefix</code>, or null if there isn't one, or
+     * if it was paged through by other columns than <code>keyColumns</code>.
+     */
+    /* package */ Checkpoint get(String docIdPrefix, List<String> keyColumns) {
+        Cursor cursor = sqliteDatabase.rawQuery("select key_columns, last_key, last_key_types, num_rows_read, "
+                + "max_seq from checkpoints where pouch_db = ? and doc_id_prefix = ?", new String[] {pouchDBName, docIdPrefix});
+        try {
+            if (!cursor.moveToNext() || !cursor.getString(0).equals(TextUtils.join(",", keyColumns))) {
+                return null;
+            }
+            ObjectMapper mapper = new ObjectMapper();
+            String[] lastKey = mapper.readValue(cursor.getString(1), String[].class);
+            String[] lastKeyTypes = mapper.readValue(cursor.getString(2), String[].class);
+            return new Checkpoint(keyColumns, new ArrayList<String>(Arrays.asList(lastKey)),
+                    new ArrayList<String>(Arrays.asList(lastKeyTypes)), cursor.getInt(3), cursor.getLong(4));
+        } catch (IOException e) {
+            throw new RuntimeException("unexpected json parsing error.  file a bug!", e);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Remember that the table's rows up to the checkpoint's key are in PouchDB.
+     */
+    /* package */ void save(String docIdPrefix, Checkpoint checkpoint) {
+        sqliteDatabase.execSQL("insert or replace into checkpoints (pouch_db, doc_id_prefix, key_columns, last_key, "
+                + "last_key_types, num_rows_read, max_seq) values (?, ?, ?, ?, ?, ?, ?)", new Object[] {pouchDBName,
+                docIdPrefix, TextUtils.join(",", checkpoint.keyColumns), JsonUtil.simplePojo(checkpoint.lastKey),
+                JsonUtil.simplePojo(checkpoint.lastKeyTypes), checkpoint.numRowsRead, checkpoint.maxSeq});
+    }
+
+    /**
+     * Forget the checkpoints of every table whose doc ids start with <code>docIdPrefix</code>, once their migration
+     * has finished.
+     */
+    /* package */ void clear(String docIdPrefix) {
+        sqliteDatabase.execSQL("delete from checkpoints where pouch_db = ? and substr(doc_id_prefix, 1, ?) = ?",
+                new Object[] {pouchDBName, docIdPrefix.length(), docIdPrefix});
+    }
+
+    /* package */ void close() {
+        sqliteDatabase.close();
+    }
+
+    /* package */ static class Checkpoint {
+
+        final List<String> keyColumns;
+        final List<String> lastKey;
+        final List<String> lastKeyTypes; // what typeof() said each value was, so it can be bound as the same type
+        final int numRowsRead;
+        final long maxSeq; // the latest change that the table's migration includes, if it's incremental
+
+        Checkpoint(List<String> keyColumns, List<String> lastKey, List<String> lastKeyTypes, int numRowsRead,
+                long maxSeq) {
+            this.keyColumns = keyColumns;
+            this.lastKey = lastKey;
+            this.lastKeyTypes = lastKeyTypes;
+            this.numRowsRead = numRowsRead;
+            this.maxSeq = maxSeq;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.pouchdb.pouchdroid.migration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.pouchdb.pouchdroid.pouch.model.PouchInfo;
+import com.pouchdb.pouchdroid.sqlite.SQLiteJavascriptInterface;
+
+/**
+ * Writes migrated docs straight into the tables of a local PouchDB, the way PouchDB's websql adapter does, instead
+ * of sending them through JavaScript and having every statement come back to Java through our WebSQL shim.  Each doc
+ * becomes a new revision on top of its winning one, with a random rev id just like the ones PouchDB makes up, and a
+ * batch is written in one SQLite transaction, on the same connection as PouchDB's own.
+ *
+ * <p/>PouchDB's JavaScript isn't told about any of this; see {@link PouchDroidMigrationTask.Builder#setDirectLoad}.
+ */
+/* package */ class MigrationDirectLoader {
+
+    private static final String POUCH_PREFIX = "_pouch_"; // PouchDB.prefix
+    private static final String DOC_STORE = "\"document-store\"";
+    private static final String BY_SEQ_STORE = "\"by-sequence\"";
+    private static final String META_STORE = "\"metadata-store\"";
+    private static final int MAX_SELECTION_ARGS = 500; // SQLite allows 999
+
+    private final SQLiteDatabase sqliteDatabase;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /* package */ MigrationDirectLoader(Context context, String pouchDBName) {
+        this.sqliteDatabase = SQLiteJavascriptInterface.getDatabase(context, POUCH_PREFIX + pouchDBName);
+        // PouchDB might not have set the database up yet, so do it the same way it would
+        sqliteDatabase.beginTransaction();
+        try {
+            sqliteDatabase.execSQL("create table if not exists " + DOC_STORE + " (id unique, seq, json, winningseq)");
+            sqliteDatabase.execSQL("create table if not exists " + BY_SEQ_STORE
+                    + " (seq INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, doc_id_rev UNIQUE, json)");
+            sqliteDatabase.execSQL("create table if not exists " + META_STORE + " (update_seq, dbid)");
+            Cursor cursor = sqliteDatabase.rawQuery("select update_seq from " + META_STORE, null);
+            try {
+                if (!cursor.moveToNext()) {
+                    // PouchDB gives it a dbid when it opens it
+                    sqliteDatabase.execSQL("insert into " + META_STORE + " (update_seq) values (0)");
+                }
+            } finally {
+                cursor.close();
+            }
+            sqliteDatabase.setTransactionSuccessful();
+        } finally {
+            sqliteDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * The winning revs of the docs, by doc id.  Docs that don't exist, or that are deleted, are left out.
+     */
+    /* package */ Map<String, String> getRevs(List<String> docIds) {
+        Map<String, String> result = new HashMap<String, String>();
+        for (Map.Entry<String, ObjectNode> entry : getMetadata(docIds).entrySet()) {
+            Leaf winner = getWinningLeaf(entry.getValue().get("rev_tree"));
+            if (!winner.deleted) {
+                result.put(entry.getKey(), winner.getRev());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Write a new revision of each doc, and set the doc's rev to it.  The revs the docs come with are ignored: a doc
+     * that already exists is always written on top of its winning rev, even if it's deleted.
+     */
+    /* package */ List<PouchInfo> bulkDocs(List<GenericSqliteDocument> documents) {
+        List<String> docIds = new ArrayList<String>(documents.size());
+        for (GenericSqliteDocument document : documents) {
+            docIds.add(document.getPouchId());
+        }
+
+        List<PouchInfo> result = new ArrayList<PouchInfo>(documents.size());
+        sqliteDatabase.beginTransaction();
+        try {
+            Map<String, ObjectNode> existingMetadata = getMetadata(docIds);
+            SQLiteStatement insertRevision = sqliteDatabase.compileStatement("insert into " + BY_SEQ_STORE
+                    + " (doc_id_rev, json) values (?, ?)");
+            SQLiteStatement insertDoc = sqliteDatabase.compileStatement("insert into " + DOC_STORE
+                    + " (id, seq, winningseq, json) values (?, ?, ?, ?)");
+            SQLiteStatement updateDoc = sqliteDatabase.compileStatement("update " + DOC_STORE
+                    + " set seq = ?, winningseq = ?, json = ? where id = ?");
+
+            for (GenericSqliteDocument document : documents) {
+                String docId = document.getPouchId();
+                String revId = UUID.randomUUID().toString().replace("-", "");
+                ObjectNode metadata = existingMetadata.get(docId);
+                ArrayNode revTree;
+                int pos;
+                if (metadata == null) {
+                    revTree = objectMapper.createArrayNode();
+                    ObjectNode root = revTree.addObject();
+                    root.put("pos", 1);
+                    root.put("ids", createRevNode(revId));
+                    pos = 1;
+                } else {
+                    // a new leaf on the winner wins in turn, so the winning seq is the new one
+                    revTree = (ArrayNode) metadata.get("rev_tree");
+                    Leaf winner = getWinningLeaf(revTree);
+                    winner.children.add(createRevNode(revId));
+                    pos = winner.pos + 1;
+                }
+                String rev = pos + "-" + revId;
+                document.setPouchRev(rev);
+
+                insertRevision.bindString(1, docId + "::" + rev);
+                insertRevision.bindString(2, toJson(document));
+                long seq = insertRevision.executeInsert();
+
+                ObjectNode newMetadata = objectMapper.createObjectNode();
+                newMetadata.put("id", docId);
+                newMetadata.put("rev_tree", revTree);
+                newMetadata.put("seq", seq);
+                if (metadata == null) {
+                    insertDoc.bindString(1, docId);
+                    insertDoc.bindLong(2, seq);
+                    insertDoc.bindLong(3, seq);
+                    insertDoc.bindString(4, toJson(newMetadata));
+                    insertDoc.executeInsert();
+                } else {
+                    updateDoc.bindLong(1, seq);
+                    updateDoc.bindLong(2, seq);
+                    updateDoc.bindString(3, toJson(newMetadata));
+                    updateDoc.bindString(4, docId);
+                    updateDoc.execute();
+                }
+                existingMetadata.put(docId, newMetadata);
+
+                PouchInfo info = new PouchInfo();
+                info.setOk(true);
+                info.setId(docId);
+                info.setRev(rev);
+                result.add(info);
+            }
+
+            sqliteDatabase.execSQL("update " + META_STORE + " set update_seq = update_seq + ?",
+                    new Object[] {documents.size()});
+            sqliteDatabase.setTransactionSuccessful();
+        } finally {
+            sqliteDatabase.endTransaction();
+        }
+        return result;
+    }
+
+    /**
+     * The metadata PouchDB keeps for each doc (its id, rev tree and seq), by doc id.  Docs that don't exist are left
+     * out.
+     */
+    private Map<String, ObjectNode> getMetadata(List<String> docIds) {
+        Map<String, ObjectNode> result = new HashMap<String, ObjectNode>();
+        for (int start = 0; start < docIds.size(); start += MAX_SELECTION_ARGS) {
+            List<String> chunk = docIds.subList(start, Math.min(docIds.size(), start + MAX_SELECTION_ARGS));
+            StringBuilder sql = new StringBuilder("select id, json from ").append(DOC_STORE).append(" where id in (");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i > 0 ? ", ?" : "?");
+            }
+            sql.append(")");
+            Cursor cursor = sqliteDatabase.rawQuery(sql.toString(), chunk.toArray(new String[chunk.size()]));
+            try {
+                while (cursor.moveToNext()) {
+                    result.put(cursor.getString(0), (ObjectNode) objectMapper.readTree(cursor.getString(1)));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("unexpected json parsing error.  file a bug!", e);
+            } finally {
+                cursor.close();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The leaf that PouchDB picks as the winning rev: not deleted if possible, then the longest branch, then the
+     * highest rev id.
+     */
+    private static Leaf getWinningLeaf(JsonNode revTree) {
+        Leaf winner = null;
+        List<JsonNode> nodes = new ArrayList<JsonNode>();
+        List<Integer> positions = new ArrayList<Integer>();
+        for (JsonNode tree : revTree) {
+            nodes.add(tree.get("ids"));
+            positions.add(tree.get("pos").getIntValue());
+        }
+        while (!nodes.isEmpty()) {
+            // each node is [revId, {status, deleted}, [children]]
+            JsonNode node = nodes.remove(nodes.size() - 1);
+            int pos = positions.remove(positions.size() - 1);
+            ArrayNode children = (ArrayNode) node.get(2);
+            if (children.size() == 0) {
+                Leaf leaf = new Leaf(pos, node.get(0).getTextValue(), node.get(1).path("deleted").asBoolean(),
+                        children);
+                if (winner == null || leaf.beats(winner)) {
+                    winner = leaf;
+                }
+            }
+            for (JsonNode child : children) {
+                nodes.add(child);
+                positions.add(pos + 1);
+            }
+        }
+        return winner;
+    }
+
+    private ArrayNode createRevNode(String revId) {
+        ArrayNode node = objectMapper.createArrayNode();
+        node.add(revId);
+        node.addObject().put("status", "available");
+        node.addArray();
+        return node;
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new RuntimeException("unexpected json generation error.  file a bug!", e);
+        }
+    }
+
+    private static class Leaf {
+
+        final int pos;
+        final String id;
+        final boolean deleted;
+        final ArrayNode children; // empty, until we add the new rev to it
+
+        Leaf(int pos, String id, boolean deleted, ArrayNode children) {
+            this.pos = pos;
+            this.id = id;
+            this.deleted = deleted;
+            this.children = children;
+        }
+
+        boolean beats(Leaf other) {
+            if (deleted != other.deleted) {
+                return !deleted;
+            } else if (pos != other.pos) {
+                return pos > other.pos;
+            }
+            return id.compareTo(other.id) > 0;
+        }
+
+        String getRev() {
+            return pos + "-" + id;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.pouchdb.pouchdroid.migration;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Remembers a hash of the content of every doc a migration has written, along with the rev it was written as, so
+ * that the next migration can tell which rows haven't changed, and leave their docs alone instead of writing a new
+ * revision with the same content.  The hashes live in a database of their own, rather than in the docs, so that
+ * checking them doesn't mean fetching every doc from PouchDB.
+ *
+ * <p/>A doc is only considered unchanged if its current rev is still the one we wrote, so if it's been changed in
+ * PouchDB in the meantime (or the PouchDB has been destroyed), it's written again.
+ */
+public class MigrationHashStore {
+
+    private static final String DATABASE_NAME = "pouchdroid_migration_hashes.db";
+    private static final int MAX_SELECTION_ARGS = 500; // SQLite allows 999
+
+    private final SQLiteDatabase sqliteDatabase;
+    private final String pouchDBName;
+
+    /* package */ MigrationHashStore(Context context, String pouchDBName) {
+        this.pouchDBName = pouchDBName;
+        this.sqliteDatabase = context.openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null);
+        sqliteDatabase.execSQL("create table if not exists hashes (pouch_db text not null, doc_id text not null, "
+                + "hash integer not null, rev text not null, primary key (pouch_db, doc_id))");
+    }
+
+    /**
+     * The hashes and revs we've stored for the docs, by doc id.  Docs we know nothing about are left out.
+     */
+    /* package */ Map<String, StoredHash> get(List<String> docIds) {
+        Map<String, StoredHash> result = new HashMap<String, StoredHash>();
+        for (int start = 0; start < docIds.size(); start += MAX_SELECTION_ARGS) {
+            List<String> chunk = docIds.subList(start, Math.min(docIds.size(), start + MAX_SELECTION_ARGS));
+            List<String> selectionArgs = new ArrayList<String>(chunk.size() + 1);
+            StringBuilder sql = new StringBuilder("select doc_id, hash, rev from hashes where pouch_db = ? "
+                    + "and doc_id in (");
+            selectionArgs.add(pouchDBName);
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i > 0 ? ", ?" : "?");
+                selectionArgs.add(chunk.get(i));
+            }
+            sql.append(")");
+            Cursor cursor = sqliteDatabase.rawQuery(sql.toString(),
+                    selectionArgs.toArray(new String[selectionArgs.size()]));
+            try {
+                while (cursor.moveToNext()) {
+                    result.put(cursor.getString(0), new StoredHash(cursor.getLong(1), cursor.getString(2)));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Store the hashes and revs of docs that have just been written, by doc id.
+     */
+    /* package */ void put(Map<String, StoredHash> hashes) {
+        sqliteDatabase.beginTransaction();
+        try {
+            SQLiteStatement statement = sqliteDatabase.compileStatement(
+                    "insert or replace into hashes (pouch_db, doc_id, hash, rev) values (?, ?, ?, ?)");
+            for (Map.Entry<String, StoredHash> entry : hashes.entrySet()) {
+                statement.bindString(1, pouchDBName);
+                statement.bindString(2, entry.getKey());
+                statement.bindLong(3, entry.getValue().hash);
+                statement.bindString(4, entry.getValue().rev);
+                statement.executeInsert();
+            }
+            sqliteDatabase.setTransactionSuccessful();
+        } finally {
+            sqliteDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Forget the docs, which have been deleted.
+     */
+    /* package */ void remove(List<String> docIds) {
+        sqliteDatabase.beginTransaction();
+        try {
+            SQLiteStatement statement = sqliteDatabase.compileStatement(
+                    "delete from hashes where pouch_db = ? and doc_id = ?");
+            for (String docId : docIds) {
+                statement.bindString(1, pouchDBName);
+                statement.bindString(2, docId);
+                statement.execute();
+            }
+            sqliteDatabase.setTransactionSuccessful();
+        } finally {
+            sqliteDatabase.endTransaction();
+        }
+    }
+
+    /* package */ void close() {
+        sqliteDatabase.close();
+    }
+
+    /**
+     * 64 bits of the MD5 of the doc's content, which is all that changes when a row does.
+     */
+    /* package */ static long hash(GenericSqliteDocument document) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+            for (Map.Entry<String, Object> entry : document.getContent().entrySet()) {
+                Object value = entry.getValue();
+                digest.update(entry.getKey().getBytes("UTF-8"));
+                // the type too, so that e.g. the string "1" and the number 1 differ
+                digest.update((byte) (value == null ? 0 : value instanceof byte[] ? 1 : value instanceof String ? 2
+                        : 3));
+                if (value instanceof byte[]) {
+                    digest.update((byte[]) value);
+                } else if (value != null) {
+                    digest.update(value.toString().getBytes("UTF-8"));
+                }
+                digest.update((byte) 0);
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("unexpected", e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("unexpected", e);
+        }
+        byte[] bytes = digest.digest();
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (bytes[i] & 0xff);
+        }
+        return hash;
+    }
+
+    /* package */ static class StoredHash {
+
+        final long hash;
+        final String rev;
+
+        StoredHash(long hash, String rev) {
+            this.hash = hash;
+            this.rev = rev;
+        }
+    }
+}
@@ -21,13 +21,23 @@ public abstract class MigrationProgressListener {
      */
     public abstract void onProgress(String tableName, int numRowsTotal, int numRowsLoaded);
     
+    /**
+     * Same as {@link #onProgress(String, int, int)}, also reporting how many of the loaded rows were skipped, because
+     * they haven't changed since the last migration.  By default, this just calls the other one.
+     * 
+     * @param numRowsSkipped number of the loaded rows that were already in PouchDB as they are
+     */
+    public void onProgress(String tableName, int numRowsTotal, int numRowsLoaded, int numRowsSkipped) {
+        onProgress(tableName, numRowsTotal, numRowsLoaded);
+    }
+    
     /**
      * Called when the migration process begins.
      */
     public abstract void onStart();
     
     /**
-     * Called when the migration process fully ends.
+     * Called when the migration process fully ends, even if it failed.
      */
     public abstract void onEnd();
     
@@ -72,6 +82,16 @@ public abstract class MigrationProgressListener {
                 prototype.onProgress(tableName, numRowsTotal, numRowsLoaded);
             }
             
+            @Override
+            public void onProgress(String tableName, int numRowsTotal, int numRowsLoaded, int numRowsSkipped) {
+                for (MigrationProgressListener subListener : others) {
+                    if (subListener != null) {
+                        subListener.onProgress(tableName, numRowsTotal, numRowsLoaded, numRowsSkipped);
+                    }
+                }
+                prototype.onProgress(tableName, numRowsTotal, numRowsLoaded, numRowsSkipped);
+            }
+            
             @Override
             public void onEnd() {
                 for (MigrationProgressListener subListener : others) {
@@ -2,21 +2,42 @@ package com.pouchdb.pouchdroid.migration;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+import org.codehaus.jackson.map.annotate.JsonSerialize.Inclusion;
 
 import android.app.Activity;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.os.AsyncTask;
-import android.os.Build;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import com.pouchdb.pouchdroid.PouchDroid;
+import com.pouchdb.pouchdroid.migration.MigrationCheckpointStore.Checkpoint;
+import com.pouchdb.pouchdroid.migration.MigrationHashStore.StoredHash;
 import com.pouchdb.pouchdroid.pouch.PouchDB;
+import com.pouchdb.pouchdroid.pouch.model.AllDocsInfo;
 import com.pouchdb.pouchdroid.pouch.model.AllDocsInfo.Row;
+import com.pouchdb.pouchdroid.pouch.model.PouchInfo;
+import com.pouchdb.pouchdroid.util.PouchOptions;
+import com.pouchdb.pouchdroid.util.ReplicationOptions;
 import com.pouchdb.pouchdroid.util.SqliteUtil;
 import com.pouchdb.pouchdroid.util.UtilLogger;
 
@@ -24,12 +45,14 @@ public class PouchDroidMigrationTask {
 
     private static UtilLogger log = new UtilLogger(PouchDroidMigrationTask.class);
 
-    private static final int BATCH_SIZE_HIMEM = 25;
-    private static final int BATCH_SIZE_LOMEM = 5;
-    private static final int SDK_INT_CUTOFF = 11; // assume devices < sdk 11 are low-memory (TODO: better method?)
+    private static final int QUEUE_CAPACITY = 2; // batches read ahead of the writes, besides the readers' own
+    private static final int MAX_SELECTION_ARGS = 500; // SQLite allows 999
+    private static final int DELETE_SCAN_PAGE_SIZE = 500; // docs per page when looking for deleted rows
+    private static final int DELETE_BATCH_SIZE = 100;
+    // names for the rowid, in order of preference; a table can shadow some of them with its own columns
+    private static final String[] ROWID_ALIASES = {"_rowid_", "rowid", "oid"};
     
     private List<SqliteTable> sqliteTables = new ArrayList<SqliteTable>();
-    private Set<String> knownDocIds = new HashSet<String>();
     private SQLiteDatabase sqliteDatabase;
     private String userId;
     private String dbName;
@@ -38,6 +61,18 @@ public class PouchDroidMigrationTask {
     private PouchDB<GenericSqliteDocument> pouchDB;
     private String packageName;
     private PouchDroid pouchDroid;
+    private MigrationBatchSizer batchSizer;
+    private boolean incremental;
+    private int maxConcurrentTables = 1;
+    private boolean directLoad;
+    private MigrationChangeTracker changeTracker; // null unless incremental
+    private Map<String, Long> lastSeqs = new HashMap<String, Long>(); // per table; -1 to migrate it in full
+    private long maxSeq; // the latest change that this migration includes
+    private int numDocsDeleted;
+    private MigrationHashStore hashStore; // null if there's no activity to store it with
+    private MigrationCheckpointStore checkpointStore; // ditto
+    private Map<String, Long> tableMaxSeqs = new HashMap<String, Long>(); // per table; older than maxSeq if resumed
+    private MigrationDirectLoader directLoader; // null unless directLoad, and there's an activity to open it with
     
     private PouchDroidMigrationTask(PouchDroid pouchDroid, SQLiteDatabase sqliteDatabase) {
         this.sqliteDatabase = sqliteDatabase;
@@ -52,7 +87,13 @@ public class PouchDroidMigrationTask {
         this.pouchDB = PouchDB.newPouchDB(GenericSqliteDocument.class, pouchDroid, pouchDBName);
         
         Activity activity = pouchDroid.getActivity();
+        this.batchSizer = new MigrationBatchSizer(activity);
         if (activity != null) {
+            this.hashStore = new MigrationHashStore(activity, pouchDBName);
+            this.checkpointStore = new MigrationCheckpointStore(activity, pouchDBName);
+            if (directLoad) {
+                this.directLoader = new MigrationDirectLoader(activity, pouchDBName);
+            }
             this.packageName = activity.getPackageName();
             this.listener = wrapListener(activity, listener);
         }
@@ -87,6 +128,19 @@ public class PouchDroidMigrationTask {
                 });
             }
             
+            @Override
+            public void onProgress(final String tableName, final int numRowsTotal, final int numRowsLoaded,
+                    final int numRowsSkipped) {
+                log.i("onProgress(%s, %s, %s, %s)", tableName, numRowsTotal, numRowsLoaded, numRowsSkipped);
+                activity.runOnUiThread(new Runnable() {
+                    
+                    @Override
+                    public void run() {
+                        clientListener.onProgress(tableName, numRowsTotal, numRowsLoaded, numRowsSkipped);
+                    }
+                });
+            }
+            
             @Override
             public void onEnd() {
                 log.i("onEnd()");
@@ -117,6 +171,8 @@ public class PouchDroidMigrationTask {
      * Migrate all given SQLite tables from SQLite to PouchDB, reporting 
      * to the progress listener along the way.
      * 
+     * <p/>If the last migration of these tables into this PouchDB never finished (e.g. because the process was
+     * killed), this one picks up where it left off.
      */
     public void start() {
         
@@ -125,54 +181,368 @@ public class PouchDroidMigrationTask {
             @Override
             protected Void doInBackground(Void... params) {
                 listener.onStart();
-                migrateSqliteTablesInBackground();
-                processDeletes();
-                listener.onEnd();
+                try {
+                    if (incremental) {
+                        prepareChangeTracking();
+                    }
+                    migrateSqliteTablesInBackground();
+                    processDeletes();
+                    // only once everything's in, so that a failed migration is resumed, and its changes not lost
+                    if (incremental) {
+                        saveChangeTracking();
+                    }
+                    if (checkpointStore != null) {
+                        checkpointStore.clear(getDocIdPrefix(userId, dbName, null));
+                    }
+                } finally {
+                    if (hashStore != null) {
+                        hashStore.close();
+                    }
+                    if (checkpointStore != null) {
+                        checkpointStore.close();
+                    }
+                    listener.onEnd();
+                }
                 return null;
             }
         }.execute(((Void)null));
     }
     
-    private void migrateSqliteTablesInBackground() {
+    /**
+     * Decide which tables can get away with migrating just the rows that changed since the last migration.
+     */
+    private void prepareChangeTracking() {
+        changeTracker = new MigrationChangeTracker(sqliteDatabase);
+        for (SqliteTable sqliteTable : sqliteTables) {
+            // if we have to create the triggers, we can't know what happened while there weren't any
+            boolean untracked = changeTracker.installTriggers(sqliteTable);
+            long lastSeq = untracked ? -1 : changeTracker.getLastSeq(pouchDBName, sqliteTable);
+            log.i("table %s: %s", sqliteTable.getName(), lastSeq == -1 ? "full migration"
+                    : "changes since " + lastSeq);
+            lastSeqs.put(sqliteTable.getName(), lastSeq);
+        }
+        // anything that changes from here on is left for the next migration, even if it makes it into this one
+        maxSeq = changeTracker.getMaxSeq();
+    }
+    
+    private void saveChangeTracking() {
         for (SqliteTable sqliteTable : sqliteTables) {
-            int totalNumRows = countNumRows(sqliteTable);
-            List<SqliteColumn> columns = getColumnsForTable(sqliteTable);
+            Long tableMaxSeq = tableMaxSeqs.get(sqliteTable.getName());
+            changeTracker.saveState(pouchDBName, sqliteTable, tableMaxSeq != null ? tableMaxSeq : maxSeq);
+        }
+    }
+    
+    private boolean isMigratingChangesOnly(SqliteTable sqliteTable) {
+        Long lastSeq = lastSeqs.get(sqliteTable.getName());
+        return lastSeq != null && lastSeq != -1;
+    }
+    
+    /**
+     * Read and convert the next batch while the previous one is being written to PouchDB, which is where most of
+     * the time goes.  The reader runs on its own thread, and hands batches over through a small queue, so that it
+     * can't get more than a couple of batches ahead of the writes and fill up the heap.  With
+     * {@link Builder#setMaxConcurrentTables(int)}, it reads several tables at once, on a pool of threads that all
+     * feed the same queue, and progress still gets reported from here, one batch at a time.
+     */
+    private void migrateSqliteTablesInBackground() {
+        final BlockingQueue<MigrationBatch> queue = new ArrayBlockingQueue<MigrationBatch>(QUEUE_CAPACITY);
+        Thread reader = new Thread(new Runnable() {
             
-            int offset = 0;
-            List<GenericSqliteDocument> documentsBatch;
+            @Override
+            public void run() {
+                MigrationBatch end;
+                try {
+                    readSqliteTables(queue);
+                    end = new MigrationBatch(null, 0, 0, null, null, null, null);
+                } catch (InterruptedException e) {
+                    return; // the writer gave up
+                } catch (RuntimeException e) {
+                    end = new MigrationBatch(null, 0, 0, null, null, null, e);
+                }
+                try {
+                    queue.put(end);
+                } catch (InterruptedException e) {
+                    // the writer gave up
+                }
+            }
+        }, "PouchDroidMigrationTask reader");
+        reader.start();
+        
+        try {
+            long lastBatchEnd = SystemClock.elapsedRealtime();
+            Map<String, Integer> numRowsSkipped = new HashMap<String, Integer>(); // per table
             for (;;) {
-                documentsBatch = convertToDocuments(offset, columns, sqliteTable);
-                
-                if (documentsBatch.isEmpty()) {
+                MigrationBatch batch = queue.take();
+                if (batch.error != null) {
+                    throw batch.error;
+                } else if (batch.documents == null) {
                     break;
                 }
                 
-                loadIntoPouchDB(documentsBatch);
-                offset += documentsBatch.size();
-                listener.onProgress(sqliteTable.getName(), totalNumRows, offset);
+                int numSkipped = numRowsSkipped.containsKey(batch.tableName) ? numRowsSkipped.get(batch.tableName) : 0;
+                if (!batch.documents.isEmpty()) {
+                    numSkipped += loadIntoPouchDB(batch.documents);
+                }
+                numRowsSkipped.put(batch.tableName, numSkipped);
+                if (batch.deletedDocIds != null && !batch.deletedDocIds.isEmpty()) {
+                    removeFromPouchDB(batch.deletedDocIds);
+                }
+                if (batch.checkpoint != null) {
+                    tableMaxSeqs.put(batch.tableName, batch.checkpoint.maxSeq);
+                    if (checkpointStore != null) {
+                        checkpointStore.save(getDocIdPrefix(userId, dbName, batch.tableName), batch.checkpoint);
+                    }
+                }
+                // what limits the pipeline is how often batches come out of it, rather than how long each one took
+                // to read or to write
+                long batchEnd = SystemClock.elapsedRealtime();
+                batchSizer.onBatch(batch.documents.size(), estimateSize(batch.documents), batchEnd - lastBatchEnd);
+                lastBatchEnd = batchEnd;
+                listener.onProgress(batch.tableName, batch.numRowsTotal, batch.numRowsRead, numSkipped);
             }
-        }        
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            reader.interrupt();
+        }
+    }
+    
+    private void readSqliteTables(final BlockingQueue<MigrationBatch> queue) throws InterruptedException {
+        int numThreads = Math.min(maxConcurrentTables, sqliteTables.size());
+        if (numThreads <= 1) {
+            for (SqliteTable sqliteTable : sqliteTables) {
+                readSqliteTable(sqliteDatabase, sqliteTable, queue);
+            }
+            return;
+        }
+        
+        // the batches of the tables are interleaved in the queue, and written by the one writer
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (final SqliteTable sqliteTable : sqliteTables) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    
+                    @Override
+                    public Void call() throws InterruptedException {
+                        SQLiteDatabase connection = openReadOnlyConnection();
+                        try {
+                            readSqliteTable(connection, sqliteTable, queue);
+                        } finally {
+                            if (connection != sqliteDatabase) {
+                                connection.close();
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow(); // stops the other tables if one failed, or if the writer gave up
+        }
+    }
+    
+    /**
+     * A connection of the reader's own, so that its queries don't wait for the other readers'; SQLite lets any number
+     * of connections read at once.  In-memory databases can't be opened twice, so they get the shared one.
+     */
+    private SQLiteDatabase openReadOnlyConnection() {
+        String path = sqliteDatabase.getPath();
+        if (path == null || path.equals(":memory:")) {
+            return sqliteDatabase;
+        }
+        try {
+            return SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
+        } catch (SQLiteException e) {
+            log.w(e, "couldn't open %s again, so sharing the connection", path);
+            return sqliteDatabase;
+        }
+    }
+    
+    private void readSqliteTable(SQLiteDatabase connection, SqliteTable sqliteTable,
+            BlockingQueue<MigrationBatch> queue) throws InterruptedException {
+        if (isMigratingChangesOnly(sqliteTable)) {
+            readChangedRows(connection, sqliteTable, queue);
+            return;
+        }
+        int totalNumRows = countNumRows(connection, sqliteTable);
+        List<SqliteColumn> columns = getColumnsForTable(connection, sqliteTable);
+        List<String> keyColumns = getKeyColumns(connection, sqliteTable, columns);
+        
+        List<String> lastKey = new ArrayList<String>(); // empty until we've read the first batch
+        List<String> lastKeyTypes = new ArrayList<String>(); // their sqlite types, as typeof() has it
+        int numRowsRead = 0;
+        long tableMaxSeq = maxSeq;
+        Checkpoint checkpoint = checkpointStore == null ? null : checkpointStore.get(
+                getDocIdPrefix(userId, dbName, sqliteTable.getName()), keyColumns);
+        if (checkpoint != null) {
+            log.i("resuming table %s after %d rows", sqliteTable.getName(), checkpoint.numRowsRead);
+            lastKey = checkpoint.lastKey;
+            lastKeyTypes = checkpoint.lastKeyTypes;
+            numRowsRead = checkpoint.numRowsRead;
+            // so that the next incremental migration picks up what changed since the checkpoint was taken
+            tableMaxSeq = checkpoint.maxSeq;
+            // the writer has to know, even if the table turns out to be done already
+            queue.put(new MigrationBatch(sqliteTable.getName(), totalNumRows, numRowsRead,
+                    new ArrayList<GenericSqliteDocument>(), null, checkpoint, null));
+        }
+        List<GenericSqliteDocument> documentsBatch;
+        for (;;) {
+            documentsBatch = convertToDocuments(connection, lastKey, lastKeyTypes, keyColumns, columns,
+                    sqliteTable);
+            
+            if (documentsBatch.isEmpty()) {
+                break;
+            }
+            
+            numRowsRead += documentsBatch.size();
+            queue.put(new MigrationBatch(sqliteTable.getName(), totalNumRows, numRowsRead, documentsBatch,
+                    null, new Checkpoint(keyColumns, new ArrayList<String>(lastKey),
+                            new ArrayList<String>(lastKeyTypes), numRowsRead, tableMaxSeq), null));
+        }
+    }
+    
+    /**
+     * Read the rows that changed since the last migration, and the ids of the docs whose rows have been deleted.
+     */
+    private void readChangedRows(SQLiteDatabase connection, SqliteTable sqliteTable,
+            BlockingQueue<MigrationBatch> queue) throws InterruptedException {
+        long lastSeq = lastSeqs.get(sqliteTable.getName());
+        int totalNumRows = changeTracker.countChangedRowIds(sqliteTable, lastSeq, maxSeq);
+        List<SqliteColumn> columns = getColumnsForTable(connection, sqliteTable);
+        String docIdPrefix = getDocIdPrefix(userId, dbName, sqliteTable.getName());
+        
+        String lastRowId = null;
+        int numRowsRead = 0;
+        for (;;) {
+            List<String> rowIds = changeTracker.getChangedRowIds(sqliteTable, lastSeq, maxSeq, lastRowId,
+                    Math.min(MAX_SELECTION_ARGS, batchSizer.getBatchRows()));
+            if (rowIds.isEmpty()) {
+                break;
+            }
+            lastRowId = rowIds.get(rowIds.size() - 1);
+            
+            List<GenericSqliteDocument> documentsBatch = convertToDocuments(connection, rowIds, columns, sqliteTable);
+            Set<String> remainingDocIds = new HashSet<String>();
+            for (String rowId : rowIds) {
+                remainingDocIds.add(docIdPrefix + rowId);
+            }
+            for (GenericSqliteDocument document : documentsBatch) {
+                remainingDocIds.remove(document.getPouchId());
+            }
+            
+            numRowsRead += rowIds.size();
+            queue.put(new MigrationBatch(sqliteTable.getName(), totalNumRows, numRowsRead, documentsBatch,
+                    new ArrayList<String>(remainingDocIds), null, null));
+        }
     }
 
-    private void loadIntoPouchDB(List<GenericSqliteDocument> documentsBatch) {
+    /**
+     * Write the documents, except the ones that are already in PouchDB as they are.
+     * 
+     * @return the number of documents that were skipped
+     */
+    private int loadIntoPouchDB(List<GenericSqliteDocument> documentsBatch) {
         // overwrite existing documents
         List<String> keys = new ArrayList<String>();
         for (GenericSqliteDocument document : documentsBatch) {
             keys.add(document.getPouchId());
         }
-        knownDocIds.addAll(keys); // save for later
-        List<Row<GenericSqliteDocument>> rows = pouchDB.allDocs(false, keys).getRows();
-        for (int i = 0; i < rows.size(); i++) {
-            Row<GenericSqliteDocument> row = rows.get(i);
-            if (row.getValue() != null) { // else error is "not_found"
-                documentsBatch.get(i).setPouchRev(row.getValue().getRev());
-            } // else doc doesn't exist yet
+        // the direct loader finds the revs to write on top of by itself
+        Map<String, String> liveRevs = directLoader != null ? directLoader.getRevs(keys) : null;
+        List<Row<GenericSqliteDocument>> rows = directLoader != null ? null : pouchDB.allDocs(false, keys).getRows();
+        Map<String, StoredHash> storedHashes = hashStore == null ? null : hashStore.get(keys);
+        
+        List<GenericSqliteDocument> changedDocuments = new ArrayList<GenericSqliteDocument>();
+        Map<String, Long> hashes = new HashMap<String, Long>();
+        for (int i = 0; i < documentsBatch.size(); i++) {
+            GenericSqliteDocument document = documentsBatch.get(i);
+            String liveRev; // null if the doc doesn't exist, or is deleted
+            if (rows != null) {
+                Row<GenericSqliteDocument> row = rows.get(i);
+                if (row.getValue() != null) { // else error is "not_found"
+                    document.setPouchRev(row.getValue().getRev());
+                } // else doc doesn't exist yet
+                liveRev = row.getValue() != null && !row.getValue().isDeleted() ? row.getValue().getRev() : null;
+            } else {
+                liveRev = liveRevs.get(document.getPouchId());
+            }
+            if (storedHashes != null) {
+                long hash = MigrationHashStore.hash(document);
+                StoredHash storedHash = storedHashes.get(document.getPouchId());
+                if (storedHash != null && storedHash.hash == hash && storedHash.rev.equals(liveRev)) {
+                    continue; // unchanged
+                }
+                hashes.put(document.getPouchId(), hash);
+            }
+            changedDocuments.add(document);
+        }
+        if (changedDocuments.isEmpty()) {
+            return documentsBatch.size();
+        }
+        
+        List<PouchInfo> infos = directLoader != null ? directLoader.bulkDocs(changedDocuments)
+                : pouchDB.bulkDocs(changedDocuments);
+        if (hashStore != null) {
+            Map<String, StoredHash> newHashes = new HashMap<String, StoredHash>();
+            for (PouchInfo info : infos) {
+                if (info.isOk() && hashes.containsKey(info.getId())) {
+                    newHashes.put(info.getId(), new StoredHash(hashes.get(info.getId()), info.getRev()));
+                }
+            }
+            hashStore.put(newHashes);
+        }
+        return documentsBatch.size() - changedDocuments.size();
+    }
+    
+    private void removeFromPouchDB(List<String> docIds) {
+        List<GenericSqliteDocument> docsToDelete = new ArrayList<GenericSqliteDocument>();
+        for (Row<GenericSqliteDocument> row : pouchDB.allDocs(false, docIds).getRows()) {
+            if (row.getValue() != null && !row.getValue().isDeleted()) {
+                docsToDelete.add(new DeletedDocument(row.getId(), row.getValue().getRev()));
+            }
+        }
+        deleteFromPouchDB(docsToDelete);
+    }
+    
+    /**
+     * Delete the docs in one go, and forget them.
+     */
+    private void deleteFromPouchDB(List<GenericSqliteDocument> docsToDelete) {
+        if (docsToDelete.isEmpty()) {
+            return;
+        }
+        List<String> deletedDocIds = new ArrayList<String>();
+        for (PouchInfo info : pouchDB.bulkDocs(docsToDelete)) {
+            if (info.isOk()) {
+                deletedDocIds.add(info.getId());
+            }
+        }
+        numDocsDeleted += deletedDocIds.size();
+        if (hashStore != null) {
+            hashStore.remove(deletedDocIds);
         }
-        pouchDB.bulkDocs(documentsBatch);
     }
 
-    private List<GenericSqliteDocument> convertToDocuments(int offset, 
-            List<SqliteColumn> sqliteColumns, SqliteTable sqliteTable) {
+    /**
+     * Read the batch of rows that comes after <code>lastKey</code>, and set <code>lastKey</code> to the key of the
+     * last one, and <code>lastKeyTypes</code> to the types of its values.  Paging by key rather than by offset means that every batch is a range scan on the table's rowid
+     * (or primary key), instead of SQLite counting its way through all the rows we've already read, and rows that
+     * are inserted or deleted while we're at it can't shift the pages around.
+     */
+    private List<GenericSqliteDocument> convertToDocuments(SQLiteDatabase connection, List<String> lastKey,
+            List<String> lastKeyTypes, List<String> keyColumns, List<SqliteColumn> sqliteColumns,
+            SqliteTable sqliteTable) {
         
         List<GenericSqliteDocument> result = new ArrayList<GenericSqliteDocument>();
         Cursor cursor = null;
@@ -180,6 +550,10 @@ public class PouchDroidMigrationTask {
             
             StringBuilder sql = new StringBuilder("select ");
             
+            for (String keyColumn : keyColumns) {
+                sql.append("typeof(").append(keyColumn).append("), ").append(keyColumn).append(", ");
+            }
+            
             // concat ids into single string
             for (int i = 0, len = sqliteTable.getIdColumns().size(); i < len; i++) {
                 String idColumn = sqliteTable.getIdColumns().get(i);
@@ -189,42 +563,32 @@ public class PouchDroidMigrationTask {
                 sql.append(idColumn);
             }
             sql.append(", * from ")
-                .append(sqliteTable.getName())
-                .append(" limit ").append(getBatchSize())
-                .append(" offset ").append(offset);
+                .append(sqliteTable.getName());
             
-            cursor = sqliteDatabase.rawQuery(sql.toString(), null);
+            List<String> selectionArgs = new ArrayList<String>();
+            appendKeysetCondition(sql, selectionArgs, lastKey, lastKeyTypes, keyColumns);
             
-            while (cursor.moveToNext()) {
-                
-                // generate uuid (i.e. the _id for couch)
-                String id = cursor.getString(0);
-                String uuid = new StringBuilder()
-                        .append(userId)
-                        .append("~")
-                        .append(dbName)
-                        .append("~")
-                        .append(sqliteTable.getName())
-                        .append("~")
-                        .append(id).toString();
-                
-                GenericSqliteDocument document = new GenericSqliteDocument();
-                document.setAppPackage(packageName);
-                document.setPouchId(uuid);
-                document.setSqliteDB(dbName);
-                document.setTable(sqliteTable.getName());
-                document.setUser(userId);
-                document.setContent(new LinkedHashMap<String, Object>());
+            sql.append(" order by ").append(TextUtils.join(", ", keyColumns))
+                .append(" limit ").append(batchSizer.getBatchRows());
+            
+            cursor = connection.rawQuery(sql.toString(), selectionArgs.toArray(new String[selectionArgs.size()]));
+            
+            int idIndex = keyColumns.size() * 2;
+            long batchBytes = batchSizer.getBatchBytes();
+            long numBytes = 0;
+            while (numBytes < batchBytes && cursor.moveToNext()) {
                 
-                for (int i = 1; i < cursor.getColumnCount(); i++) {
-                    
-                    SqliteColumn sqliteColumn = sqliteColumns.get(i - 1);
-                    
-                    Object value = getValueFromCusor(sqliteColumn, cursor, i);
-                    document.getContent().put(sqliteColumn.getName(), value);
+                lastKey.clear();
+                lastKeyTypes.clear();
+                for (int i = 0; i < idIndex; i += 2) {
+                    String type = cursor.getString(i);
+                    lastKeyTypes.add(type);
+                    lastKey.add(readKeyValue(cursor, i + 1, type));
                 }
                 
+                GenericSqliteDocument document = readDocument(cursor, idIndex, sqliteColumns, sqliteTable);
                 result.add(document);
+                numBytes += estimateSize(document);
             }
             
             return result;
@@ -236,25 +600,231 @@ public class PouchDroidMigrationTask {
         }
     }
     
-    private void processDeletes() {
-        // if any rows were deleted in sqlite, those should be migrated over as well
-        List<GenericSqliteDocument> docsToDelete = new ArrayList<GenericSqliteDocument>();
+    /**
+     * Read the rows with the given ids (concatenated, as in the doc ids).  Any that aren't there have been deleted.
+     */
+    private List<GenericSqliteDocument> convertToDocuments(SQLiteDatabase connection, List<String> rowIds,
+            List<SqliteColumn> sqliteColumns,
+            SqliteTable sqliteTable) {
+        
+        List<GenericSqliteDocument> result = new ArrayList<GenericSqliteDocument>();
+        String rowIdExpression = MigrationChangeTracker.getRowIdExpression(sqliteTable, "");
+        StringBuilder sql = new StringBuilder("select ").append(rowIdExpression).append(", * from ")
+                .append(sqliteTable.getName()).append(" where ").append(rowIdExpression).append(" in (");
+        for (int i = 0; i < rowIds.size(); i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+        sql.append(")");
         
-        for (Row<GenericSqliteDocument> row : pouchDB.allDocs(false).getRows()) {
+        Cursor cursor = null;
+        try {
+            cursor = connection.rawQuery(sql.toString(), rowIds.toArray(new String[rowIds.size()]));
+            while (cursor.moveToNext()) {
+                result.add(readDocument(cursor, 0, sqliteColumns, sqliteTable));
+            }
+            return result;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+    
+    /**
+     * Convert the row under the cursor, whose columns are the id (i.e. the id columns, concatenated) at
+     * <code>idIndex</code>, and then all of the table's columns.
+     */
+    private GenericSqliteDocument readDocument(Cursor cursor, int idIndex, List<SqliteColumn> sqliteColumns,
+            SqliteTable sqliteTable) {
+        // generate uuid (i.e. the _id for couch)
+        String id = cursor.getString(idIndex);
+        String uuid = getDocIdPrefix(userId, dbName, sqliteTable.getName()) + id;
+        
+        GenericSqliteDocument document = new GenericSqliteDocument();
+        document.setAppPackage(packageName);
+        document.setPouchId(uuid);
+        document.setSqliteDB(dbName);
+        document.setTable(sqliteTable.getName());
+        document.setUser(userId);
+        document.setContent(new LinkedHashMap<String, Object>());
+        
+        for (int i = idIndex + 1; i < cursor.getColumnCount(); i++) {
             
-            if (!knownDocIds.contains(row.getId())) {
-                // all we actually need here is the id and rev
-                GenericSqliteDocument doc = new GenericSqliteDocument();
-                doc.setPouchId(row.getId());
-                doc.setPouchRev(row.getValue().getRev());
-                docsToDelete.add(doc);
+            SqliteColumn sqliteColumn = sqliteColumns.get(i - idIndex - 1);
+            
+            Object value = getValueFromCusor(sqliteColumn, cursor, i);
+            document.getContent().put(sqliteColumn.getName(), value);
+        }
+        return document;
+    }
+    
+    /**
+     * Append the where clause that selects the rows after <code>lastKey</code>, i.e. for key columns a and b,
+     * <code>a > ? or (a = ? and b > ?)</code>.  (Row values, i.e. <code>(a, b) > (?, ?)</code>, would be neater, but
+     * they're too new for Android's SQLite.)  Rows with null keys are left out, since they have no place in the
+     * order, and no unique doc id either.
+     */
+    private static void appendKeysetCondition(StringBuilder sql, List<String> selectionArgs, List<String> lastKey,
+            List<String> lastKeyTypes, List<String> keyColumns) {
+        sql.append(" where ");
+        for (int i = 0; i < keyColumns.size(); i++) {
+            if (i > 0) {
+                sql.append(" and ");
+            }
+            sql.append(keyColumns.get(i)).append(" is not null");
+        }
+        if (lastKey.isEmpty()) {
+            return;
+        }
+        sql.append(" and (");
+        for (int i = 0; i < keyColumns.size(); i++) {
+            if (i > 0) {
+                sql.append(" or ");
+            }
+            sql.append("(");
+            for (int j = 0; j < i; j++) {
+                sql.append(keyColumns.get(j)).append(" = ");
+                appendKeyValue(sql, selectionArgs, lastKey.get(j), lastKeyTypes.get(j));
+                sql.append(" and ");
+            }
+            sql.append(keyColumns.get(i)).append(" > ");
+            appendKeyValue(sql, selectionArgs, lastKey.get(i), lastKeyTypes.get(i));
+            sql.append(")");
+        }
+        sql.append(")");
+    }
+    
+    /**
+     * Read a key value of the given type (as <code>typeof()</code> has it) in a form that
+     * {@link #appendKeyValue(StringBuilder, List, String, String)} can turn back into exactly the same value: reals
+     * in full precision, and blobs as hex.
+     */
+    private static String readKeyValue(Cursor cursor, int index, String type) {
+        if ("real".equals(type)) {
+            return Double.toString(cursor.getDouble(index));
+        } else if ("blob".equals(type)) {
+            byte[] blob = cursor.getBlob(index);
+            StringBuilder hex = new StringBuilder(blob.length * 2);
+            for (byte b : blob) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        }
+        return cursor.getString(index);
+    }
+    
+    /**
+     * Append a key value, as the type it was read as.  Android only binds strings, and a number that comes back as
+     * a string sorts after every number in a column without a type (or with a BLOB one), so numbers are cast back.
+     * The <code>+ 0</code> leaves the cast without an affinity, so that SQLite doesn't turn the column's
+     * numeric-looking text into numbers to compare them, which would put them somewhere else than in the
+     * <code>order by</code>.  Blobs are hex literals, since they can't be bound as strings either.
+     */
+    private static void appendKeyValue(StringBuilder sql, List<String> selectionArgs, String value, String type) {
+        if ("integer".equals(type)) {
+            sql.append("(cast(? as integer) + 0)");
+        } else if ("real".equals(type)) {
+            sql.append("(cast(? as real) + 0)");
+        } else if ("blob".equals(type)) {
+            sql.append("x'").append(value).append("'");
+            return;
+        } else {
+            sql.append("?");
+        }
+        selectionArgs.add(value);
+    }
+    
+    /**
+     * The columns to page through the table by: the rowid, unless it's a <code>WITHOUT ROWID</code> table, in which
+     * case the id columns (which are presumably its primary key) have to do.
+     */
+    private List<String> getKeyColumns(SQLiteDatabase connection, SqliteTable sqliteTable,
+            List<SqliteColumn> columns) {
+        Set<String> columnNames = new HashSet<String>();
+        for (SqliteColumn column : columns) {
+            columnNames.add(column.getName().toLowerCase(Locale.US));
+        }
+        for (String rowidAlias : ROWID_ALIASES) {
+            if (columnNames.contains(rowidAlias)) {
+                continue; // shadowed
+            }
+            Cursor cursor = null;
+            try {
+                cursor = connection.rawQuery(new StringBuilder("select ").append(rowidAlias).append(" from ")
+                        .append(sqliteTable.getName()).append(" limit 0").toString(), null);
+                return Arrays.asList(rowidAlias);
+            } catch (SQLiteException e) {
+                log.i("no rowid for table %s, paging by %s instead", sqliteTable.getName(),
+                        sqliteTable.getIdColumns());
+                break;
+            } finally {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
+        return sqliteTable.getIdColumns();
+    }
+    
+    /**
+     * Delete the docs of rows that no longer exist, i.e. every doc that no row has the id of.  PouchDB's doc ids and
+     * the tables' ids are both read in order, a page of docs and a cursor window of ids at a time, so this takes the
+     * same amount of memory however big the tables are.
+     */
+    private void processDeletes() {
+        // the deleted rows of tables that have only had their changes migrated are already taken care of
+        List<String> skippedDocIdPrefixes = new ArrayList<String>();
+        Map<String, SqliteTable> tablesByDocIdPrefix = new HashMap<String, SqliteTable>();
+        for (SqliteTable sqliteTable : sqliteTables) {
+            String docIdPrefix = getDocIdPrefix(userId, dbName, sqliteTable.getName());
+            if (isMigratingChangesOnly(sqliteTable)) {
+                skippedDocIdPrefixes.add(docIdPrefix);
+            } else {
+                tablesByDocIdPrefix.put(docIdPrefix, sqliteTable);
             }
         }
         
-        for (GenericSqliteDocument docToDelete : docsToDelete) {
-            pouchDB.remove(docToDelete);
+        SqliteDocIdCursor sqliteDocIds = new SqliteDocIdCursor(sqliteDatabase, tablesByDocIdPrefix);
+        try {
+            List<GenericSqliteDocument> docsToDelete = new ArrayList<GenericSqliteDocument>();
+            String startKey = null;
+            for (;;) {
+                Map<String, Object> options = PouchOptions.from(PouchOptions.SCAN_LIMIT, DELETE_SCAN_PAGE_SIZE);
+                if (startKey != null) {
+                    options.put(PouchOptions.START_KEY, startKey);
+                }
+                AllDocsInfo<GenericSqliteDocument> page = pouchDB.allDocs(options);
+                for (Row<GenericSqliteDocument> row : page.getRows()) {
+                    if (row.getId().equals(startKey)) {
+                        continue; // the startkey is inclusive, so we saw it on the last page
+                    }
+                    if (!startsWithAny(row.getId(), skippedDocIdPrefixes) && !sqliteDocIds.contains(row.getId())) {
+                        docsToDelete.add(new DeletedDocument(row.getId(), row.getValue().getRev()));
+                        if (docsToDelete.size() >= DELETE_BATCH_SIZE) {
+                            deleteFromPouchDB(docsToDelete);
+                            docsToDelete.clear();
+                        }
+                    }
+                }
+                if (page.getLastKey() == null || page.getLastKey().equals(startKey)) {
+                    break; // nothing new scanned
+                }
+                startKey = page.getLastKey();
+            }
+            deleteFromPouchDB(docsToDelete);
+        } finally {
+            sqliteDocIds.close();
+        }
+        listener.onDocsDeleted(numDocsDeleted);
+    }
+    
+    private static boolean startsWithAny(String str, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (str.startsWith(prefix)) {
+                return true;
+            }
         }
-        listener.onDocsDeleted(docsToDelete.size());
+        return false;
     }
     
     private Object getValueFromCusor(SqliteColumn sqliteColumn, Cursor cursor, int i) {
@@ -275,15 +845,38 @@ public class PouchDroidMigrationTask {
         }
     }
 
-    private int getBatchSize() {
-        return Build.VERSION.SDK_INT < SDK_INT_CUTOFF ? BATCH_SIZE_LOMEM : BATCH_SIZE_HIMEM;
+    private static long estimateSize(List<GenericSqliteDocument> documents) {
+        long size = 0;
+        for (GenericSqliteDocument document : documents) {
+            size += estimateSize(document);
+        }
+        return size;
+    }
+    
+    /**
+     * Rough size of the document's data in bytes, as Java holds it.
+     */
+    private static long estimateSize(GenericSqliteDocument document) {
+        long size = document.getPouchId().length() * 2;
+        for (Map.Entry<String, Object> entry : document.getContent().entrySet()) {
+            Object value = entry.getValue();
+            size += entry.getKey().length() * 2;
+            if (value instanceof String) {
+                size += ((String) value).length() * 2;
+            } else if (value instanceof byte[]) {
+                size += ((byte[]) value).length;
+            } else {
+                size += 8;
+            }
+        }
+        return size;
     }
 
-    private int countNumRows(SqliteTable sqliteTable) {
+    private int countNumRows(SQLiteDatabase connection, SqliteTable sqliteTable) {
         Cursor cursor = null;
         
         try {
-            cursor = sqliteDatabase.rawQuery(
+            cursor = connection.rawQuery(
                     new StringBuilder("select count(*) from ")
                         .append(sqliteTable.getName())
                         .toString(), null);
@@ -301,14 +894,14 @@ public class PouchDroidMigrationTask {
         }
     }
     
-    private List<SqliteColumn> getColumnsForTable(SqliteTable table) {
+    private List<SqliteColumn> getColumnsForTable(SQLiteDatabase connection, SqliteTable table) {
         
         Cursor cursor = null;
         
         List<SqliteColumn> result = new ArrayList<SqliteColumn>();
         
         try {
-            cursor = sqliteDatabase.rawQuery(
+            cursor = connection.rawQuery(
                     new StringBuilder("pragma table_info(")
                         .append(table.getName())
                         .append(")").toString(), null);
@@ -335,6 +928,61 @@ public class PouchDroidMigrationTask {
         }
     }
     
+    /**
+     * The prefix of the ids of the docs a migration writes, which look like <code>userId~dbName~tableName~rowId</code>.
+     * Pass null for the table, or for the db and the table, to get a prefix that matches more of them, e.g. to
+     * replicate just one user's docs with {@link ReplicationOptions#setIdPrefix(String)}.
+     */
+    public static String getDocIdPrefix(String userId, String dbName, String tableName) {
+        StringBuilder prefix = new StringBuilder(userId).append("~");
+        if (dbName != null) {
+            prefix.append(dbName).append("~");
+            if (tableName != null) {
+                prefix.append(tableName).append("~");
+            }
+        }
+        return prefix.toString();
+    }
+
+    private static class MigrationBatch {
+        
+        final String tableName;
+        final int numRowsTotal;
+        final int numRowsRead; // in the table so far, including this batch
+        final List<GenericSqliteDocument> documents; // null at the end
+        final List<String> deletedDocIds; // for incremental migrations; null otherwise
+        final Checkpoint checkpoint; // to save once the batch is written; null for changed rows
+        final RuntimeException error; // if the reader failed
+        
+        MigrationBatch(String tableName, int numRowsTotal, int numRowsRead, List<GenericSqliteDocument> documents,
+                List<String> deletedDocIds, Checkpoint checkpoint, RuntimeException error) {
+            this.tableName = tableName;
+            this.numRowsTotal = numRowsTotal;
+            this.numRowsRead = numRowsRead;
+            this.documents = documents;
+            this.deletedDocIds = deletedDocIds;
+            this.checkpoint = checkpoint;
+            this.error = error;
+        }
+    }
+    
+    /**
+     * All we need to delete a doc: its id and rev, and <code>_deleted</code>.
+     */
+    @JsonSerialize(include = Inclusion.NON_NULL)
+    private static class DeletedDocument extends GenericSqliteDocument {
+        
+        DeletedDocument(String pouchId, String pouchRev) {
+            setPouchId(pouchId);
+            setPouchRev(pouchRev);
+        }
+        
+        @JsonProperty("_deleted")
+        public boolean isDeleted() {
+            return true;
+        }
+    }
+    
     public static class Builder {
         
         private PouchDroidMigrationTask migrationTask;
@@ -392,6 +1040,56 @@ public class PouchDroidMigrationTask {
             return this;
         }
         
+        /**
+         * Only migrate the rows that have changed since the last migration to the same PouchDB, instead of every
+         * row of every table.  The first incremental migration of a table is still a full one.
+         * 
+         * <p/>Changes are tracked with triggers on the migrated tables, logging to a table in the same SQLite
+         * database (see {@link MigrationChangeTracker}), so this has a small cost on every insert, update and
+         * delete, even when no migration is running.  To get rid of the triggers, call
+         * {@link MigrationChangeTracker#removeChangeTracking(SQLiteDatabase)}.
+         * @param incremental
+         * @return
+         */
+        public Builder setIncremental(boolean incremental) {
+            migrationTask.incremental = incremental;
+            return this;
+        }
+        
+        /**
+         * Read up to this many tables at once, each on its own thread and SQLite connection.  Defaults to 1, i.e. one
+         * table after the other.
+         * 
+         * <p/>Only the reading happens in parallel: every doc still goes into PouchDB through the one JavaScript
+         * thread, so this helps most when there are several big tables and converting the rows is what's slow.
+         * Each reader holds a batch in memory while it waits for the writer.
+         * @param maxConcurrentTables
+         * @return
+         */
+        public Builder setMaxConcurrentTables(int maxConcurrentTables) {
+            if (maxConcurrentTables < 1) {
+                throw new IllegalArgumentException("maxConcurrentTables must be at least 1");
+            }
+            migrationTask.maxConcurrentTables = maxConcurrentTables;
+            return this;
+        }
+        
+        /**
+         * Write the docs straight into the local PouchDB's SQLite tables from Java, instead of passing each batch
+         * through JavaScript, which then writes it back through our native SQLite interface one statement at a
+         * time.  Every batch is written in one SQLite transaction.  Only works with a local PouchDB.
+         * 
+         * <p/>PouchDB's JavaScript doesn't hear about the docs being written, so a live changes feed or continuous
+         * replication of the PouchDB only picks them up with the next change made through PouchDB.  Run the
+         * replication after the migration instead.  Deleting docs still goes through PouchDB.
+         * @param directLoad
+         * @return
+         */
+        public Builder setDirectLoad(boolean directLoad) {
+            migrationTask.directLoad = directLoad;
+            return this;
+        }
+        
         public PouchDroidMigrationTask build() {
             if (migrationTask.sqliteTables.isEmpty()) {
                 throw new IllegalArgumentException(
@@ -400,6 +1098,9 @@ public class PouchDroidMigrationTask {
                 throw new IllegalArgumentException("You must supply a userId using setUserId().");
             } else if (TextUtils.isEmpty(migrationTask.pouchDBName)) {
                 throw new IllegalArgumentException("You must supply a pouchDBName using setPouchDBName().");
+            } else if (migrationTask.directLoad && migrationTask.pouchDBName.contains("://")) {
+                throw new IllegalArgumentException("setDirectLoad() only works with a local PouchDB, not "
+                        + migrationTask.pouchDBName);
             }
             migrationTask.init();
             return migrationTask;
@@ -0,0 +1,91 @@
+package com.pouchdb.pouchdroid.migration;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * The doc ids of every row of some tables, read from SQLite in the order PouchDB keeps its docs in, so that the two can
+ * be compared like a merge join: one pass over each, with no more than a cursor window of ids in memory.
+ *
+ * <p/>PouchDB orders doc ids by their UTF-8 bytes (SQLite's <code>BINARY</code> collation), which is the order of
+ * their code points rather than of Java's chars.  Every table's doc ids start with a prefix of its own, so going
+ * through the tables in the order of their prefixes, and through each table's row ids in order, gives all the doc ids
+ * in order.
+ */
+/* package */ class SqliteDocIdCursor {
+
+    /* package */ static final Comparator<String> CODE_POINT_ORDER = new Comparator<String>() {
+
+        @Override
+        public int compare(String lhs, String rhs) {
+            // the strings are the same up to i, so i is at the same code point in both
+            for (int i = 0, len = Math.min(lhs.length(), rhs.length()); i < len;) {
+                int lhsCodePoint = lhs.codePointAt(i);
+                int rhsCodePoint = rhs.codePointAt(i);
+                if (lhsCodePoint != rhsCodePoint) {
+                    return lhsCodePoint - rhsCodePoint;
+                }
+                i += Character.charCount(lhsCodePoint);
+            }
+            return lhs.length() - rhs.length();
+        }
+    };
+
+    private final SQLiteDatabase sqliteDatabase;
+    private final Iterator<Map.Entry<String, SqliteTable>> tables;
+    private String docIdPrefix;
+    private Cursor cursor;
+    private String docId; // the current one; null once we're past the end
+
+    /**
+     * @param tablesByDocIdPrefix the tables, by the prefix of their doc ids
+     */
+    /* package */ SqliteDocIdCursor(SQLiteDatabase sqliteDatabase, Map<String, SqliteTable> tablesByDocIdPrefix) {
+        this.sqliteDatabase = sqliteDatabase;
+        Map<String, SqliteTable> sortedTables = new TreeMap<String, SqliteTable>(CODE_POINT_ORDER);
+        sortedTables.putAll(tablesByDocIdPrefix);
+        this.tables = sortedTables.entrySet().iterator();
+        moveToNext();
+    }
+
+    /**
+     * Whether any row has this doc id.  Each call has to ask about an id that doesn't come before the previous one,
+     * since the cursor only moves forward.
+     */
+    /* package */ boolean contains(String docId) {
+        while (this.docId != null && CODE_POINT_ORDER.compare(this.docId, docId) < 0) {
+            moveToNext();
+        }
+        return docId.equals(this.docId);
+    }
+
+    /* package */ void close() {
+        if (cursor != null) {
+            cursor.close();
+            cursor = null;
+        }
+    }
+
+    private void moveToNext() {
+        while (cursor == null || !cursor.moveToNext()) {
+            close();
+            if (!tables.hasNext()) {
+                docId = null;
+                return;
+            }
+            Map.Entry<String, SqliteTable> table = tables.next();
+            docIdPrefix = table.getKey();
+            // the migration turns a null id into "null", so do the same
+            cursor = sqliteDatabase.rawQuery(new StringBuilder("select ifnull(cast(")
+                    .append(MigrationChangeTracker.getRowIdExpression(table.getValue(), ""))
+                    .append(" as text), 'null') as row_id from ").append(table.getValue().getName())
+                    .append(" order by row_id collate binary").toString(), null);
+        }
+        docId = docIdPrefix + cursor.getString(0);
+    }
+}
@@ -489,6 +489,9 @@ public abstract class AbstractPouchDB<T extends PouchDocumentInterface> {
      * </ul>
      * </li>
      * <li><code>options.attachments</code>: Include attachment data</li>
+     * <li><code>options.scan_limit</code>: Only scan this many docs, deleted
+     * ones included, and set <code>last_key</code> in the response to the id
+     * of the last one, for paging through a big database (PouchDroid only)</li>
      * </ul>
      * 
      * <p>
@@ -584,6 +587,11 @@ public abstract class AbstractPouchDB<T extends PouchDocumentInterface> {
      * <code>options.onChange</code> is not supported on server replications.</li>
      * <li><code>options.create_target</code>: Create target database if it does
      * not exist. Only for server replications.</li>
+     * <li><code>options.batch_size</code>, <code>options.batches_limit</code>,
+     * <code>options.max_connections</code>: Throughput tuning (PouchDroid only);
+     * see {@link com.pouchdb.pouchdroid.util.ReplicationOptions}.</li>
+     * <li><code>options.id_prefix</code>: Only replicate docs whose ids start
+     * with this (PouchDroid only).</li>
      * </ul>
      * 
      * <h4>Example Usage:</h4>
@@ -645,8 +653,9 @@ public abstract class AbstractPouchDB<T extends PouchDocumentInterface> {
      * @param remoteDB
      * @param options
      * @param complete
+     * @return a handle for cancelling, pausing or resuming the replication
      */
-    public abstract void replicateTo(String remoteDB, Map<String, Object> options, ReplicateCallback complete);
+    public abstract ReplicationHandle replicateTo(String remoteDB, Map<String, Object> options, ReplicateCallback complete);
  
     /**
      * <h2>Replicate a database<a id="replication"></a></h2>
@@ -692,6 +701,11 @@ public abstract class AbstractPouchDB<T extends PouchDocumentInterface> {
      * <code>options.onChange</code> is not supported on server replications.</li>
      * <li><code>options.create_target</code>: Create target database if it does
      * not exist. Only for server replications.</li>
+     * <li><code>options.batch_size</code>, <code>options.batches_limit</code>,
+     * <code>options.max_connections</code>: Throughput tuning (PouchDroid only);
+     * see {@link com.pouchdb.pouchdroid.util.ReplicationOptions}.</li>
+     * <li><code>options.id_prefix</code>: Only replicate docs whose ids start
+     * with this (PouchDroid only).</li>
      * </ul>
      * 
      * <h4>Example Usage:</h4>
@@ -753,8 +767,9 @@ public abstract class AbstractPouchDB<T extends PouchDocumentInterface> {
      * @param remoteDB
      * @param options
      * @param complete
+     * @return a handle for cancelling, pausing or resuming the replication
      */    
-    public abstract void replicateFrom(String remoteDB, Map<String, Object> options, ReplicateCallback complete);
+    public abstract ReplicationHandle replicateFrom(String remoteDB, Map<String, Object> options, ReplicateCallback complete);
     
     /**
      * 
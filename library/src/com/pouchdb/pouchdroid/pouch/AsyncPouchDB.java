@@ -8,6 +8,7 @@ import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import android.app.Activity;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import com.pouchdb.pouchdroid.PouchDroid;
@@ -18,14 +19,19 @@ import com.pouchdb.pouchdroid.pouch.callback.Callback;
 import com.pouchdb.pouchdroid.pouch.callback.DatabaseInfoCallback;
 import com.pouchdb.pouchdroid.pouch.callback.GetCallback;
 import com.pouchdb.pouchdroid.pouch.callback.ReplicateCallback;
+import com.pouchdb.pouchdroid.pouch.callback.ReplicationListener;
 import com.pouchdb.pouchdroid.pouch.callback.StandardCallback;
 import com.pouchdb.pouchdroid.pouch.model.AllDocsInfo;
 import com.pouchdb.pouchdroid.pouch.model.MapFunction;
 import com.pouchdb.pouchdroid.pouch.model.PouchError;
 import com.pouchdb.pouchdroid.pouch.model.ReduceFunction;
+import com.pouchdb.pouchdroid.pouch.model.ReplicationBatchInfo;
 import com.pouchdb.pouchdroid.util.JsonUtil;
 import com.pouchdb.pouchdroid.util.PouchOptions;
+import com.pouchdb.pouchdroid.util.ReplicationOptions;
 import com.pouchdb.pouchdroid.util.UtilLogger;
+import com.pouchdb.pouchdroid.xhr.XhrHttpClient;
+import com.pouchdb.pouchdroid.xhr.XhrMetrics;
 
 public class AsyncPouchDB<T extends PouchDocumentInterface> extends AbstractPouchDB<T> {
 
@@ -310,68 +316,86 @@ public class AsyncPouchDB<T extends PouchDocumentInterface> extends AbstractPouc
     }
 
 
-    public void replicateTo(String remoteDB, Map<String, Object> options, ReplicateCallback complete) {
-        loadAction("replicate.to", JsonUtil.simpleString(remoteDB), options, complete, "complete");
+    public ReplicationHandle replicateTo(String remoteDB, Map<String, Object> options, ReplicateCallback complete) {
+        return replicateTo(remoteDB, options, complete, null);
+    }
+
+    /**
+     * Same as {@link AsyncPouchDB#replicateTo(String, Map, ReplicateCallback)}, but the listener is also told about
+     * each batch of docs as it's written.
+     */
+    public ReplicationHandle replicateTo(String remoteDB, Map<String, Object> options, ReplicateCallback complete,
+            ReplicationListener listener) {
+        return startReplication("replicate.to", remoteDB, options, complete, listener);
     }
     
     /**
      * @see AsyncPouchDB#replicateTo(remoteDB, options, complete)
      */
-    public void replicateTo(String remoteDB, boolean continuous, ReplicateCallback complete) {
-        replicateTo(remoteDB, PouchOptions.from(PouchOptions.CONTINUOUS, continuous), complete);
+    public ReplicationHandle replicateTo(String remoteDB, boolean continuous, ReplicateCallback complete) {
+        return replicateTo(remoteDB, PouchOptions.from(PouchOptions.CONTINUOUS, continuous), complete);
     }
     
     /**
      * @see AsyncPouchDB#replicateTo(remoteDB, options, complete)
      */
-    public void replicateTo(String remoteDB, boolean continuous) {
-        replicateTo(remoteDB, PouchOptions.from(PouchOptions.CONTINUOUS, continuous), null);
+    public ReplicationHandle replicateTo(String remoteDB, boolean continuous) {
+        return replicateTo(remoteDB, PouchOptions.from(PouchOptions.CONTINUOUS, continuous), null);
     }
     
     /**
      * @see AsyncPouchDB#replicateTo(remoteDB, options, complete)
      */
-    public void replicateTo(String remoteDB, ReplicateCallback complete) {
-        replicateTo(remoteDB, null, complete);
+    public ReplicationHandle replicateTo(String remoteDB, ReplicateCallback complete) {
+        return replicateTo(remoteDB, null, complete);
     }
     
     /**
      * @see AsyncPouchDB#replicateTo(remoteDB, options, complete)
      */    
-    public void replicateTo(String remoteDB) {
-        replicateTo(remoteDB, null);
+    public ReplicationHandle replicateTo(String remoteDB) {
+        return replicateTo(remoteDB, null);
     }
     
-    public void replicateFrom(String remoteDB, Map<String, Object> options, ReplicateCallback complete) {
-        loadAction("replicate.from", JsonUtil.simpleString(remoteDB), options, complete, "complete");
+    public ReplicationHandle replicateFrom(String remoteDB, Map<String, Object> options, ReplicateCallback complete) {
+        return replicateFrom(remoteDB, options, complete, null);
+    }
+
+    /**
+     * Same as {@link AsyncPouchDB#replicateFrom(String, Map, ReplicateCallback)}, but the listener is also told about
+     * each batch of docs as it's written.
+     */
+    public ReplicationHandle replicateFrom(String remoteDB, Map<String, Object> options, ReplicateCallback complete,
+            ReplicationListener listener) {
+        return startReplication("replicate.from", remoteDB, options, complete, listener);
     }
     
     /**
      * @see AsyncPouchDB#replicateFrom(remoteDB, options, complete)
      */
-    public void replicateFrom(String remoteDB, boolean continuous, ReplicateCallback complete) {
-        replicateFrom(remoteDB, PouchOptions.from(PouchOptions.CONTINUOUS, continuous), complete);
+    public ReplicationHandle replicateFrom(String remoteDB, boolean continuous, ReplicateCallback complete) {
+        return replicateFrom(remoteDB, PouchOptions.from(PouchOptions.CONTINUOUS, continuous), complete);
     }
     
     /**
      * @see AsyncPouchDB#replicateFrom(remoteDB, options, complete)
      */
-    public void replicateFrom(String remoteDB, boolean continuous) {
-        replicateFrom(remoteDB, PouchOptions.from(PouchOptions.CONTINUOUS, continuous), null);
+    public ReplicationHandle replicateFrom(String remoteDB, boolean continuous) {
+        return replicateFrom(remoteDB, PouchOptions.from(PouchOptions.CONTINUOUS, continuous), null);
     }
 
     /**
      * @see AsyncPouchDB#replicateFrom(remoteDB, options, complete)
      */
-    public void replicateFrom(String remoteDB, ReplicateCallback complete) {
-        replicateFrom(remoteDB, null, complete);
+    public ReplicationHandle replicateFrom(String remoteDB, ReplicateCallback complete) {
+        return replicateFrom(remoteDB, null, complete);
     }
     
     /**
      * @see AsyncPouchDB#replicateFrom(remoteDB, options, complete)
      */    
-    public void replicateFrom(String remoteDB) {
-        replicateFrom(remoteDB, null);
+    public ReplicationHandle replicateFrom(String remoteDB) {
+        return replicateFrom(remoteDB, null);
     }
     
     public void info(DatabaseInfoCallback callback) {
@@ -517,17 +541,80 @@ public class AsyncPouchDB<T extends PouchDocumentInterface> extends AbstractPouc
         pouchDroid.loadJavascript(js);
     }
 
-    private void loadAction(String action, Map<String, Object> options, Callback<?> callback) {
-        loadAction(action, null, options, callback, null);
+    private ReplicationHandle startReplication(String action, String remoteDB, Map<String, Object> options,
+            ReplicateCallback complete, ReplicationListener listener) {
+        if (destroyed) {
+            throw new RuntimeException("PouchDB destroyed!  Can't do any further actions.");
+        }
+        // fail here, rather than in the WebView where nobody would hear about it
+        ReplicationOptions.getIdPrefix(options);
+        // the parts of the tuning that PouchDB doesn't know about are up to the native HTTP layer
+        int batchSize = ReplicationOptions.getInt(options, PouchOptions.BATCH_SIZE);
+        int batchesLimit = ReplicationOptions.getInt(options, PouchOptions.BATCHES_LIMIT);
+        int maxConnections = ReplicationOptions.getInt(options, PouchOptions.MAX_CONNECTIONS);
+        if (batchSize > 0 || batchesLimit > 0 || maxConnections > 0) {
+            XhrHttpClient.getInstance().tuneReplication(remoteDB, batchSize, batchesLimit, maxConnections);
+        }
+
+        ReplicationHandle handle = new ReplicationHandle(this, action, remoteDB, options, complete, listener);
+        handle.start();
+        return handle;
+    }
+
+    /**
+     * Start the replication in the WebView, keeping hold of PouchDB's return value so that it can be cancelled.
+     */
+    /* package */ void loadReplication(ReplicationHandle handle, String action, String remoteDB,
+            Map<String, Object> options, int completeCallbackId, int batchCallbackId) {
+        log.d("loadReplication(%s, %s, %s, %s)", handle.getId(), action, remoteDB, options);
+
+        // callbacks are options, encode them properly in the options map
+        // TODO: this is hacky; do it properly
+        options = options == null ? new LinkedHashMap<String, Object>()
+                : new LinkedHashMap<String, Object>(options);
+        options.remove("complete");
+        options.remove("onBatch");
+        StringBuilder functions = new StringBuilder()
+                .append(JsonUtil.simpleString("complete")).append(":")
+                .append(createFunctionForCallbackId(completeCallbackId)).append(",")
+                // our own option, patched into PouchDB's replicator; see js/Gruntfile.js
+                .append(JsonUtil.simpleString("onBatch")).append(":")
+                .append(createFunctionForCallbackId(batchCallbackId))
+                .append(options.isEmpty() ? "" : ",");
+
+        StringBuilder js = new StringBuilder("PouchDroid.replications[").append(handle.getId())
+                .append("] = PouchDroid.pouchDBs[").append(id).append("].").append(action).append("(")
+                .append(JsonUtil.simpleString(remoteDB)).append(",")
+                // insert after open brace
+                .append(new StringBuilder(JsonUtil.simpleMap(options)).insert(1, functions))
+                .append(");");
+
+        pouchDroid.loadJavascript(js);
     }
 
-    private void loadAction(String action, String arg1, Map<String, Object> options, Callback<?> callback) {
-        loadAction(action, arg1, options, callback, null);
+    /**
+     * Cancel the replication in the WebView, which also aborts its changes feed if it's continuous.
+     */
+    /* package */ void cancelReplication(ReplicationHandle handle) {
+        pouchDroid.loadJavascript(new StringBuilder("(function(){var replication = PouchDroid.replications[")
+                .append(handle.getId()).append("];if (replication) {delete PouchDroid.replications[")
+                .append(handle.getId()).append("];replication.cancel();}})();"));
     }
 
-    private void loadAction(String action, String arg1, Map<String, Object> options, Callback<?> callback,
-            String callbackOptionKey) {
-        log.d("loadAction(%s, %s, %s, %s, %s", action, arg1, options, callback, callbackOptionKey);
+    /**
+     * Let go of a replication in the WebView that has completed by itself.
+     */
+    /* package */ void forgetReplication(ReplicationHandle handle) {
+        pouchDroid.loadJavascript(new StringBuilder("delete PouchDroid.replications[").append(handle.getId())
+                .append("];"));
+    }
+
+    private void loadAction(String action, Map<String, Object> options, Callback<?> callback) {
+        loadAction(action, null, options, callback);
+    }
+
+    private void loadAction(String action, String arg1, Map<String, Object> options, Callback<?> callback) {
+        log.d("loadAction(%s, %s, %s, %s", action, arg1, options, callback);
 
         if (destroyed) {
             throw new RuntimeException("PouchDB destroyed!  Can't do any further actions.");
@@ -537,29 +624,11 @@ public class AsyncPouchDB<T extends PouchDocumentInterface> extends AbstractPouc
         if (!TextUtils.isEmpty(arg1)) {
             arguments.add(arg1);
         }
-        if (callbackOptionKey != null) {
-            // callback is an option, encode it properly in the options map
-            // TODO: this is hacky; do it properly
-            options = options == null ? new LinkedHashMap<String, Object>()
-                    : new LinkedHashMap<String, Object>(options);
-            options.remove(callbackOptionKey);
-            arguments.add(new StringBuilder(JsonUtil.simpleMap(options)).insert(
-                    1,
-                    new StringBuilder()
-                            // insert after open brace
-                            .append(JsonUtil.simpleString(callbackOptionKey)).append(":")
-                            .append(createFunctionForCallback(callback))
-                            .append(options.isEmpty() ? "" : ",")
-                            ));
-
-        } else {
-            // callback is an arg, not an option in the map
-            if (options != null && !options.isEmpty()) {
-                arguments.add(JsonUtil.simpleMap(options));
-            }
-            if (callback != null) {
-                arguments.add(createFunctionForCallback(callback));
-            }
+        if (options != null && !options.isEmpty()) {
+            arguments.add(JsonUtil.simpleMap(options));
+        }
+        if (callback != null) {
+            arguments.add(createFunctionForCallback(callback));
         }
 
         StringBuilder js = new StringBuilder("PouchDroid.pouchDBs[").append(id).append("].").append(action).append("(")
@@ -579,25 +648,10 @@ public class AsyncPouchDB<T extends PouchDocumentInterface> extends AbstractPouc
         // begin cone of death
         int callbackId = PouchJavascriptInterface.INSTANCE.addCallback(new Callback<Object>() {
 
+            @SuppressWarnings("unchecked")
             @Override
             public void onCallback(final PouchError err, final Object info) {
-                Activity activity = pouchDroid.getActivity();
-                if (activity != null) {
-                    // ensure it runs on the ui thread
-                    activity.runOnUiThread(new Runnable() {
-
-                        @SuppressWarnings("unchecked")
-                        @Override
-                        public void run() {
-                            try {
-                                innerCallback.onCallback(err, info);
-                            } catch (Exception e) {
-                                log.e(e, "User-created callback threw an exception");
-                                throw new RuntimeException(e);
-                            }
-                        }
-                    });
-                }
+                callbackOnUiThread(innerCallback, err, info);
             }
 
             @Override
@@ -611,10 +665,68 @@ public class AsyncPouchDB<T extends PouchDocumentInterface> extends AbstractPouc
             }
         });
 
+        return createFunctionForCallbackId(callbackId);
+    }
+
+    private static CharSequence createFunctionForCallbackId(int callbackId) {
         return new StringBuilder("function(err, info){PouchJavascriptInterface.callback(").append(callbackId).append(
                 ", err ? JSON.stringify(err) : null, info ? JSON.stringify(info) : null);}");
     }
+
+    /* package */ <E> void callbackOnUiThread(final Callback<E> callback, final PouchError err, final E info) {
+        Activity activity = pouchDroid.getActivity();
+        if (activity != null) {
+            // ensure it runs on the ui thread
+            activity.runOnUiThread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        callback.onCallback(err, info);
+                    } catch (Exception e) {
+                        log.e(e, "User-created callback threw an exception");
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+    }
     
+    /**
+     * Fills in the parts of the batch info that we measure ourselves: everything since the previous batch.
+     */
+    /* package */ ReplicationListener wrapReplicationListener(final ReplicationListener listener) {
+        final XhrMetrics metrics = XhrHttpClient.getMetrics();
+        return new ReplicationListener() {
+
+            private long lastBatchTime = SystemClock.elapsedRealtime();
+            private long lastBytesSent = metrics.getRequestBytesOnWire();
+            private long lastBytesReceived = metrics.getResponseBytesOnWire();
+            private int lastTotalDocsRead;
+
+            @Override
+            public void onCallback(PouchError err, ReplicationBatchInfo info) {
+                if (info != null) {
+                    long now = SystemClock.elapsedRealtime();
+                    long bytesSent = metrics.getRequestBytesOnWire();
+                    long bytesReceived = metrics.getResponseBytesOnWire();
+
+                    info.setLatencyMillis(now - lastBatchTime);
+                    // the metrics may have been reset in the meantime
+                    info.setBytesSent(Math.max(0, bytesSent - lastBytesSent));
+                    info.setBytesReceived(Math.max(0, bytesReceived - lastBytesReceived));
+                    info.setDocsRead(info.getTotalDocsRead() - lastTotalDocsRead);
+
+                    lastBatchTime = now;
+                    lastBytesSent = bytesSent;
+                    lastBytesReceived = bytesReceived;
+                    lastTotalDocsRead = info.getTotalDocsRead();
+                }
+                listener.onCallback(err, info);
+            }
+        };
+    }
+
     private AllDocsCallback<T> wrapAllDocsCallback(final AllDocsCallback<T> callback) {
         if (callback == null) {
             return null;
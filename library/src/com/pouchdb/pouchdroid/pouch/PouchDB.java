@@ -325,8 +325,8 @@ public class PouchDB<T extends PouchDocumentInterface> {
      * 
      * @see AsyncPouchDB#replicateTo(remoteDB, options, complete)
      */    
-    public void replicateTo(String remoteDB, Map<String, Object> options) throws PouchException {
-        delegate.replicateTo(remoteDB, options, (ReplicateCallback)null);
+    public ReplicationHandle replicateTo(String remoteDB, Map<String, Object> options) throws PouchException {
+        return delegate.replicateTo(remoteDB, options, (ReplicateCallback)null);
         // replication cannot block, because we can't be 100% sure that "complete" will be called back
         // (even if it's not continuous)
         // TODO: this is unexpected
@@ -342,8 +342,8 @@ public class PouchDB<T extends PouchDocumentInterface> {
      * 
      * @see AsyncPouchDB#replicateTo(remoteDB, options, complete)
      */    
-    public void replicateTo(String remoteDB) throws PouchException {
-        replicateTo(remoteDB, null);
+    public ReplicationHandle replicateTo(String remoteDB) throws PouchException {
+        return replicateTo(remoteDB, null);
     }
     
     /**
@@ -356,8 +356,8 @@ public class PouchDB<T extends PouchDocumentInterface> {
      * 
      * @see AsyncPouchDB#replicateTo(remoteDB, options, complete)
      */    
-    public void replicateTo(String remoteDB, boolean continuous) throws PouchException {
-        replicateTo(remoteDB, PouchOptions.from(PouchOptions.CONTINUOUS, continuous));
+    public ReplicationHandle replicateTo(String remoteDB, boolean continuous) throws PouchException {
+        return replicateTo(remoteDB, PouchOptions.from(PouchOptions.CONTINUOUS, continuous));
     }
 
     /**
@@ -371,8 +371,8 @@ public class PouchDB<T extends PouchDocumentInterface> {
      * @see AsyncPouchDB#replicateFrom(remoteDB, options, complete)
      */
     
-    public void replicateFrom(String remoteDB, Map<String, Object> options) throws PouchException {
-        delegate.replicateFrom(remoteDB, options, (ReplicateCallback)null);
+    public ReplicationHandle replicateFrom(String remoteDB, Map<String, Object> options) throws PouchException {
+        return delegate.replicateFrom(remoteDB, options, (ReplicateCallback)null);
         // replication cannot block, because we can't be 100% sure that "complete" will be called back
         // (even if it's not continuous)
         // TODO: this is unexpected
@@ -388,8 +388,8 @@ public class PouchDB<T extends PouchDocumentInterface> {
      * 
      * @see AsyncPouchDB#replicateFrom(remoteDB, options, complete)
      */
-    public void replicateFrom(String remoteDB) throws PouchException {
-        replicateFrom(remoteDB, null);
+    public ReplicationHandle replicateFrom(String remoteDB) throws PouchException {
+        return replicateFrom(remoteDB, null);
     }
     
     /**
@@ -402,8 +402,8 @@ public class PouchDB<T extends PouchDocumentInterface> {
      * 
      * @see AsyncPouchDB#replicateFrom(remoteDB, options, complete)
      */
-    public void replicateFrom(String remoteDB, boolean continuous) throws PouchException {
-        replicateFrom(remoteDB, PouchOptions.from(PouchOptions.CONTINUOUS, continuous));
+    public ReplicationHandle replicateFrom(String remoteDB, boolean continuous) throws PouchException {
+        return replicateFrom(remoteDB, PouchOptions.from(PouchOptions.CONTINUOUS, continuous));
     }
     
     /**
@@ -52,7 +52,10 @@ public class PouchJavascriptInterface {
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
     private void callbackAndPossiblyThrow(int callbackId, String errObjJson, String infoObjJson) throws IOException {
-        Callback callback = callbacks.get(callbackId);
+        Callback callback;
+        synchronized (callbacks) {
+            callback = callbacks.get(callbackId);
+        }
         if (callback == null) {
             log.i("callback was null: %s", callbackId);
             return;
@@ -91,7 +94,20 @@ public class PouchJavascriptInterface {
      */
     public int addCallback(Callback<?> callback) {
         int callbackId = callbackIds.incrementAndGet();
-        callbacks.put(callbackId, callback);
+        synchronized (callbacks) {
+            callbacks.put(callbackId, callback);
+        }
         return callbackId;
     }
+
+    /**
+     * remove a callback that's no longer needed, e.g. because its replication was cancelled.  Any later call to it
+     * from JS is ignored.
+     * @param callbackId
+     */
+    public void removeCallback(int callbackId) {
+        synchronized (callbacks) {
+            callbacks.remove(callbackId);
+        }
+    }
 }
@@ -0,0 +1,222 @@
+package com.pouchdb.pouchdroid.pouch;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.os.SystemClock;
+
+import com.pouchdb.pouchdroid.pouch.callback.ReplicateCallback;
+import com.pouchdb.pouchdroid.pouch.callback.ReplicationListener;
+import com.pouchdb.pouchdroid.pouch.model.PouchError;
+import com.pouchdb.pouchdroid.pouch.model.ReplicateInfo;
+import com.pouchdb.pouchdroid.pouch.model.ReplicationBatchInfo;
+import com.pouchdb.pouchdroid.util.ReplicationOptions;
+import com.pouchdb.pouchdroid.util.UtilLogger;
+import com.pouchdb.pouchdroid.xhr.XhrHttpClient;
+
+/**
+ * A running replication, as returned by {@link AsyncPouchDB#replicateTo(String, Map, ReplicateCallback)} and
+ * {@link AsyncPouchDB#replicateFrom(String, Map, ReplicateCallback)}.  Mostly useful for continuous replications,
+ * which otherwise keep going until the app dies: cancel them in <code>onDestroy()</code>, or pause them in
+ * <code>onStop()</code> and resume them in <code>onStart()</code>.
+ *
+ * <p/>Cancelling (or pausing) stops the replication after the request it's currently waiting on, aborts the
+ * <code>_changes</code> feed of a continuous replication, and drops the callbacks, so that nothing is called back
+ * afterwards.  PouchDB has no notion of pausing, so a paused replication is really cancelled, and resuming starts a
+ * new one with the same options; thanks to the checkpoints, it picks up where the old one left off.
+ *
+ * @author nolan
+ *
+ */
+public class ReplicationHandle {
+
+    private static UtilLogger log = new UtilLogger(ReplicationHandle.class);
+
+    private static final AtomicInteger HANDLE_IDS = new AtomicInteger(0);
+
+    public static enum State {
+        RUNNING,
+        PAUSED,
+        /** Finished (not continuous), or stopped by an error.  Check the ReplicateCallback to see which. */
+        COMPLETE,
+        CANCELLED;
+    }
+
+    private final int id = HANDLE_IDS.incrementAndGet();
+    private final AsyncPouchDB<?> pouchDB;
+    private final String action;
+    private final String remoteDB;
+    private final Map<String, Object> options;
+    private final String idPrefix;
+    private final ReplicateCallback complete;
+    private final ReplicationListener listener;
+
+    // all guarded by this
+    private State state = State.RUNNING;
+    private boolean caughtUp;
+    private int run; // incremented on every (re)start, so that callbacks from an old run can be ignored
+    private int completeCallbackId;
+    private int batchCallbackId;
+
+    /* package */ ReplicationHandle(AsyncPouchDB<?> pouchDB, String action, String remoteDB,
+            Map<String, Object> options, ReplicateCallback complete, ReplicationListener listener) {
+        this.pouchDB = pouchDB;
+        this.action = action;
+        this.remoteDB = remoteDB;
+        this.options = options;
+        this.idPrefix = ReplicationOptions.getIdPrefix(options);
+        this.complete = complete;
+        this.listener = listener;
+    }
+
+    /**
+     * Stop the replication for good.  Does nothing if it's already over.
+     */
+    public void cancel() {
+        stop(State.CANCELLED);
+    }
+
+    /**
+     * Stop the replication until {@link #resume()} is called.  Does nothing unless it's running.
+     */
+    public void pause() {
+        stop(State.PAUSED);
+    }
+
+    /**
+     * Restart a paused replication from its last checkpoint.  Does nothing unless it's paused.
+     */
+    public void resume() {
+        synchronized (this) {
+            if (state != State.PAUSED) {
+                return;
+            }
+            state = State.RUNNING;
+        }
+        start();
+    }
+
+    /**
+     * Block until the replication has nothing left to do: it's complete, paused or cancelled, or (if it's continuous)
+     * it has copied every change it has seen so far.  Don't call this from the UI thread.
+     *
+     * <p/>Note that a continuous replication only finds out it's caught up after it has written a batch, so one that
+     * has had nothing to copy since it was (re)started doesn't count as idle.
+     *
+     * @return false if the timeout expired first
+     */
+    public synchronized boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = SystemClock.elapsedRealtime() + unit.toMillis(timeout);
+        while (!isIdle()) {
+            long remaining = deadline - SystemClock.elapsedRealtime();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /* package */ int getId() {
+        return id;
+    }
+
+    /* package */ void start() {
+        final int thisRun;
+        synchronized (this) {
+            thisRun = ++run;
+            caughtUp = false;
+
+            completeCallbackId = PouchJavascriptInterface.INSTANCE.addCallback(new ReplicateCallback() {
+
+                @Override
+                public void onCallback(PouchError err, ReplicateInfo info) {
+                    synchronized (ReplicationHandle.this) {
+                        if (run != thisRun || state != State.RUNNING) {
+                            return;
+                        }
+                        state = State.COMPLETE;
+                        releaseCallbacks();
+                        endPrefetching();
+                        ReplicationHandle.this.notifyAll();
+                    }
+                    pouchDB.forgetReplication(ReplicationHandle.this);
+                    if (complete != null) {
+                        pouchDB.callbackOnUiThread(complete, err, info);
+                    }
+                }
+            });
+
+            final ReplicationListener wrappedListener = listener == null ? null
+                    : pouchDB.wrapReplicationListener(listener);
+            batchCallbackId = PouchJavascriptInterface.INSTANCE.addCallback(new ReplicationListener() {
+
+                @Override
+                public void onCallback(PouchError err, ReplicationBatchInfo info) {
+                    synchronized (ReplicationHandle.this) {
+                        if (run != thisRun || state != State.RUNNING) {
+                            return;
+                        }
+                        caughtUp = info != null && info.getPendingRevs() <= 0;
+                        ReplicationHandle.this.notifyAll();
+                    }
+                    if (wrappedListener != null) {
+                        pouchDB.callbackOnUiThread(wrappedListener, err, info);
+                    }
+                }
+            });
+
+            if (isPull()) {
+                // so that the prefetcher doesn't fetch the docs PouchDB will skip
+                XhrHttpClient.getInstance().startReplication(remoteDB, id, idPrefix);
+            }
+            // under the lock, so that it reaches the WebView before any cancel
+            pouchDB.loadReplication(this, action, remoteDB, options, completeCallbackId, batchCallbackId);
+        }
+    }
+
+    private void stop(State newState) {
+        synchronized (this) {
+            if (state != State.RUNNING && !(state == State.PAUSED && newState == State.CANCELLED)) {
+                return;
+            }
+            boolean wasRunning = state == State.RUNNING;
+            state = newState;
+            notifyAll();
+            if (!wasRunning) {
+                return; // paused, so there's nothing running in the WebView
+            }
+            releaseCallbacks();
+            endPrefetching();
+            log.d("%s replication %d: %s", newState, id, remoteDB);
+            pouchDB.cancelReplication(this);
+        }
+    }
+
+    private void releaseCallbacks() {
+        PouchJavascriptInterface.INSTANCE.removeCallback(completeCallbackId);
+        PouchJavascriptInterface.INSTANCE.removeCallback(batchCallbackId);
+    }
+
+    /**
+     * Let the prefetcher forget this replication's id prefix, without touching any other replication's.
+     */
+    private void endPrefetching() {
+        if (isPull()) {
+            XhrHttpClient.getInstance().endReplication(remoteDB, id);
+        }
+    }
+
+    private boolean isPull() {
+        return action.equals("replicate.from");
+    }
+
+    private boolean isIdle() {
+        return state != State.RUNNING || caughtUp;
+    }
+}
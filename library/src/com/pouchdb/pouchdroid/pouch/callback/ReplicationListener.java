@@ -0,0 +1,24 @@
+package com.pouchdb.pouchdroid.pouch.callback;
+
+import com.pouchdb.pouchdroid.pouch.model.ReplicationBatchInfo;
+
+/**
+ * Called after each batch of docs that a replication writes to its target, so that you can keep an eye on
+ * throughput.  Like the other callbacks, it runs on the UI thread.  The error is non-null if the batch couldn't be
+ * written.
+ * 
+ * @author nolan
+ *
+ */
+public abstract class ReplicationListener implements Callback<ReplicationBatchInfo> {
+
+    @Override
+    public Object getPrimaryClass() {
+        return ReplicationBatchInfo.class;
+    }
+
+    @Override
+    public Class<?> getGenericClass() {
+        return null;
+    }
+}
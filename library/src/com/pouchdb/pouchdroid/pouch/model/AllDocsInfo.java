@@ -33,6 +33,7 @@ public class AllDocsInfo<T extends PouchDocumentInterface> {
     
     private int totalRows;
     private int offset;
+    private String lastKey;
     private List<Row<T>> rows;
     
     public int getOffset() {
@@ -51,6 +52,20 @@ public class AllDocsInfo<T extends PouchDocumentInterface> {
         this.totalRows = totalRows;
     }
 
+    /**
+     * The id of the last doc scanned, deleted or not, if you set <code>scan_limit</code>; null if there were none.
+     * The next page starts here.
+     */
+    @JsonProperty("last_key")
+    public String getLastKey() {
+        return lastKey;
+    }
+
+    @JsonProperty("last_key")
+    public void setLastKey(String lastKey) {
+        this.lastKey = lastKey;
+    }
+
     public List<Row<T>> getRows() {
         return rows;
     }
@@ -117,6 +132,7 @@ public class AllDocsInfo<T extends PouchDocumentInterface> {
     
     public static class RowValue {
         private String rev;
+        private boolean deleted; // only set when asking for keys
 
         public String getRev() {
             return rev;
@@ -126,9 +142,17 @@ public class AllDocsInfo<T extends PouchDocumentInterface> {
             this.rev = rev;
         }
 
+        public boolean isDeleted() {
+            return deleted;
+        }
+
+        public void setDeleted(boolean deleted) {
+            this.deleted = deleted;
+        }
+
         @Override
         public String toString() {
-            return "RowValue [rev=" + rev + "]";
+            return "RowValue [rev=" + rev + ", deleted=" + deleted + "]";
         }
     }
 
@@ -0,0 +1,155 @@
+package com.pouchdb.pouchdroid.pouch.model;
+
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+/**
+ * Progress of a replication after it's written a batch of docs.  Pouch gives us this:
+ * 
+ * {
+ *   'docs_written': 25,
+ *   'total_docs_read': 75,
+ *   'total_docs_written': 75,
+ *   'pending_revs': 10,
+ *   'last_seq': 312
+ * }
+ * 
+ * and the rest is measured on the Java side.  Note that the byte counts come from
+ * {@link com.pouchdb.pouchdroid.xhr.XhrMetrics}, so they include any other HTTP traffic that went on during the
+ * batch, e.g. a second replication.
+ * 
+ * @author nolan
+ *
+ */
+public class ReplicationBatchInfo {
+
+    private int docsRead;
+    private int docsWritten;
+    private int totalDocsRead;
+    private int totalDocsWritten;
+    private int pendingRevs;
+    private String lastSeq;
+    private long bytesSent;
+    private long bytesReceived;
+    private long latencyMillis;
+
+    /**
+     * Docs read from the source since the previous batch.
+     */
+    @JsonIgnore
+    public int getDocsRead() {
+        return docsRead;
+    }
+
+    @JsonIgnore
+    public void setDocsRead(int docsRead) {
+        this.docsRead = docsRead;
+    }
+
+    /**
+     * Docs written to the target in this batch.
+     */
+    @JsonProperty("docs_written")
+    public int getDocsWritten() {
+        return docsWritten;
+    }
+
+    @JsonProperty("docs_written")
+    public void setDocsWritten(int docsWritten) {
+        this.docsWritten = docsWritten;
+    }
+
+    @JsonProperty("total_docs_read")
+    public int getTotalDocsRead() {
+        return totalDocsRead;
+    }
+
+    @JsonProperty("total_docs_read")
+    public void setTotalDocsRead(int totalDocsRead) {
+        this.totalDocsRead = totalDocsRead;
+    }
+
+    @JsonProperty("total_docs_written")
+    public int getTotalDocsWritten() {
+        return totalDocsWritten;
+    }
+
+    @JsonProperty("total_docs_written")
+    public void setTotalDocsWritten(int totalDocsWritten) {
+        this.totalDocsWritten = totalDocsWritten;
+    }
+
+    /**
+     * Revisions the replication knows it still has to copy.  Zero means it has caught up with the changes it has
+     * seen so far.
+     */
+    @JsonProperty("pending_revs")
+    public int getPendingRevs() {
+        return pendingRevs;
+    }
+
+    @JsonProperty("pending_revs")
+    public void setPendingRevs(int pendingRevs) {
+        this.pendingRevs = pendingRevs;
+    }
+
+    /**
+     * The source's update sequence as of this batch, i.e. the checkpoint the replication will resume from.
+     */
+    @JsonProperty("last_seq")
+    public String getLastSeq() {
+        return lastSeq;
+    }
+
+    @JsonProperty("last_seq")
+    public void setLastSeq(String lastSeq) {
+        this.lastSeq = lastSeq;
+    }
+
+    /**
+     * Bytes sent over the network since the previous batch.
+     */
+    @JsonIgnore
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    @JsonIgnore
+    public void setBytesSent(long bytesSent) {
+        this.bytesSent = bytesSent;
+    }
+
+    /**
+     * Bytes received over the network since the previous batch.
+     */
+    @JsonIgnore
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    @JsonIgnore
+    public void setBytesReceived(long bytesReceived) {
+        this.bytesReceived = bytesReceived;
+    }
+
+    /**
+     * Time since the previous batch (or since the replication started, for the first one).
+     */
+    @JsonIgnore
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    @JsonIgnore
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicationBatchInfo [docsRead=" + docsRead + ", docsWritten=" + docsWritten + ", totalDocsRead="
+                + totalDocsRead + ", totalDocsWritten=" + totalDocsWritten + ", pendingRevs=" + pendingRevs + ", lastSeq="
+                + lastSeq + ", bytesSent=" + bytesSent + ", bytesReceived=" + bytesReceived + ", latencyMillis="
+                + latencyMillis + "]";
+    }
+}
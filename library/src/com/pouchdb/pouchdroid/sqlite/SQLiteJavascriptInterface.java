@@ -25,6 +25,7 @@ import org.codehaus.jackson.type.TypeReference;
 
 import android.annotation.SuppressLint;
 import android.app.Activity;
+import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
@@ -86,7 +87,32 @@ public class SQLiteJavascriptInterface {
      * @return
      */
     public List<String> getDbNames() {
-        return new ArrayList<String>(dbs.keySet());
+        synchronized (dbs) {
+            return new ArrayList<String>(dbs.keySet());
+        }
+    }
+
+    /**
+     * Get one of the databases that pouch uses, opening it if pouch hasn't yet.  It's the same connection that pouch's
+     * own transactions run on, so SQLite won't interleave any transaction on it with theirs.
+     * 
+     * @param context
+     * @param dbName the name pouch gives it, e.g. <code>_pouch_mydb</code>
+     * @return
+     */
+    public static SQLiteDatabase getDatabase(Context context, String dbName) {
+        return getOrCreateHelper(context, dbName).getWritableDatabase();
+    }
+    
+    private static BasicSQLiteOpenHelper getOrCreateHelper(Context context, String dbName) {
+        synchronized (dbs) {
+            BasicSQLiteOpenHelper db = dbs.get(dbName);
+            if (db == null) { // doesn't exist yet
+                db = new BasicSQLiteOpenHelper(context.getApplicationContext(), dbName);
+                dbs.put(dbName, db);
+            }
+            return db;
+        }
     }
 
     @JavascriptInterface
@@ -100,11 +126,7 @@ public class SQLiteJavascriptInterface {
         }
         
         try {
-            BasicSQLiteOpenHelper db = dbs.get(dbName);
-            if (db == null) { // doesn't exist yet
-                db = new BasicSQLiteOpenHelper(activity.getApplicationContext(), dbName);
-                dbs.put(dbName, db);
-            }
+            getOrCreateHelper(activity, dbName);
             sendCallback(new JavascriptCallback(callbackId, null));
         } catch (Exception e) {
             // shouldn't happen
@@ -391,7 +413,10 @@ public class SQLiteJavascriptInterface {
     private void perform(final WebSqlTask task) {
         log.d("perform(%s)", task);
 
-        BasicSQLiteOpenHelper dbHelper = dbs.get(task.getDbName());
+        BasicSQLiteOpenHelper dbHelper;
+        synchronized (dbs) {
+            dbHelper = dbs.get(task.getDbName());
+        }
         if (dbHelper == null) {
             log.d("couldn't find db for name %s", task.getDbName());
             sendCallback(new JavascriptCallback(task.getErrorId(), "couldn't find db"));
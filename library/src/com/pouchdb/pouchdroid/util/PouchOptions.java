@@ -23,6 +23,15 @@ public class PouchOptions {
     public static final String KEYS = "keys";
     public static final String ATTACHMENTS = "attachments";
     public static final String CONFLICTS = "conflicts";
+    public static final String REVS = "revs";
+    public static final String BATCH_SIZE = "batch_size";
+    public static final String BATCHES_LIMIT = "batches_limit";
+    public static final String MAX_CONNECTIONS = "max_connections";
+    public static final String DOC_IDS = "doc_ids";
+    public static final String FILTER = "filter";
+    public static final String QUERY_PARAMS = "query_params";
+    public static final String ID_PREFIX = "id_prefix";
+    public static final String SCAN_LIMIT = "scan_limit";
     
     public static Map<String, Object> from(String key, Object value) {
         Map<String, Object> map = new LinkedHashMap<String, Object>();
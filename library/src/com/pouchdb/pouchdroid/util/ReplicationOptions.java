@@ -0,0 +1,173 @@
+package com.pouchdb.pouchdroid.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Options for {@link com.pouchdb.pouchdroid.pouch.AsyncPouchDB#replicateTo(String, Map,
+ * com.pouchdb.pouchdroid.pouch.callback.ReplicateCallback)} and friends, with setters for the knobs that matter for
+ * throughput, and for replicating only a subset of the docs.  It's still a plain options map, so anything else PouchDB
+ * understands can be put() in as usual.
+ *
+ * <p/>On high-latency links (2G), bigger batches save the most, since they cut down on round trips; more batches in
+ * flight only help if there's bandwidth to spare, which is more the case on Wi-Fi.  ReplicationBenchmarkTest in the
+ * unit tests measures docs/s for a few combinations against a simulated slow and fast network.
+ *
+ * @author nolan
+ *
+ */
+public class ReplicationOptions extends LinkedHashMap<String, Object> {
+
+    private static final long serialVersionUID = 1L;
+
+    public ReplicationOptions() {
+    }
+
+    public ReplicationOptions(Map<String, Object> options) {
+        super(options);
+    }
+
+    public boolean isContinuous() {
+        return Boolean.TRUE.equals(get(PouchOptions.CONTINUOUS));
+    }
+
+    public ReplicationOptions setContinuous(boolean continuous) {
+        put(PouchOptions.CONTINUOUS, continuous);
+        return this;
+    }
+
+    public int getBatchSize() {
+        return getInt(this, PouchOptions.BATCH_SIZE);
+    }
+
+    /**
+     * Number of changes to read from the source per request, which is also the number of docs written to the
+     * target in one go, and (for pull replications) the number of docs fetched per <code>_bulk_get</code>.  The
+     * default is 25.
+     */
+    public ReplicationOptions setBatchSize(int batchSize) {
+        put(PouchOptions.BATCH_SIZE, batchSize);
+        return this;
+    }
+
+    public int getBatchesLimit() {
+        return getInt(this, PouchOptions.BATCHES_LIMIT);
+    }
+
+    /**
+     * Number of batches of docs a pull replication may have in flight (or fetched and waiting to be written) at
+     * once.  The default is 1, i.e. no pipelining.  Only has an effect while <code>_bulk_get</code> prefetching is
+     * on (see {@link com.pouchdb.pouchdroid.xhr.XhrConfig#setBulkGetBatchSize(int)}).
+     */
+    public ReplicationOptions setBatchesLimit(int batchesLimit) {
+        put(PouchOptions.BATCHES_LIMIT, batchesLimit);
+        return this;
+    }
+
+    public int getMaxConnections() {
+        return getInt(this, PouchOptions.MAX_CONNECTIONS);
+    }
+
+    /**
+     * Number of concurrent HTTP connections to the remote host, which defaults to
+     * {@link com.pouchdb.pouchdroid.xhr.XhrConfig#getMaxConnectionsPerHost()}.  The HTTP client is shared, so this
+     * applies to everything talking to that host, not just this replication.
+     */
+    public ReplicationOptions setMaxConnections(int maxConnections) {
+        put(PouchOptions.MAX_CONNECTIONS, maxConnections);
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<String> getDocIds() {
+        return (List<String>) get(PouchOptions.DOC_IDS);
+    }
+
+    /**
+     * Only replicate these docs.  When the source is CouchDB, it does the filtering, so the rest of the
+     * <code>_changes</code> feed never goes over the wire.
+     */
+    public ReplicationOptions setDocIds(Collection<String> docIds) {
+        put(PouchOptions.DOC_IDS, new ArrayList<String>(docIds));
+        return this;
+    }
+
+    public ReplicationOptions setDocIds(String... docIds) {
+        return setDocIds(Arrays.asList(docIds));
+    }
+
+    public String getFilter() {
+        return (String) get(PouchOptions.FILTER);
+    }
+
+    /**
+     * Only replicate the docs that pass a filter function in a design doc on the source database, by name, e.g.
+     * <code>"app/by_user"</code> for <code>_design/app</code>'s <code>filters.by_user</code>.  It can't be combined
+     * with {@link #setDocIds(Collection)}, since CouchDB implements that as a filter too; if both are set, the doc
+     * ids are checked on the client.
+     */
+    public ReplicationOptions setFilter(String filter) {
+        put(PouchOptions.FILTER, filter);
+        return this;
+    }
+
+    /**
+     * Same as {@link #setFilter(String)}, with the params that the filter function sees in <code>req.query</code>.
+     */
+    public ReplicationOptions setFilter(String filter, Map<String, ?> queryParams) {
+        setFilter(filter);
+        return setQueryParams(queryParams);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getQueryParams() {
+        return (Map<String, Object>) get(PouchOptions.QUERY_PARAMS);
+    }
+
+    public ReplicationOptions setQueryParams(Map<String, ?> queryParams) {
+        put(PouchOptions.QUERY_PARAMS, new LinkedHashMap<String, Object>(queryParams));
+        return this;
+    }
+
+    public String getIdPrefix() {
+        return getIdPrefix(this);
+    }
+
+    /**
+     * Only replicate the docs whose ids start with the prefix.  Unlike a filter, this is checked on the device, so it
+     * works against any server without a design doc; the changes of the other docs are still read, but the docs
+     * themselves are never fetched or written.  The docs written by
+     * {@link com.pouchdb.pouchdroid.migration.PouchDroidMigrationTask} have ids that start with the user, so
+     * {@link com.pouchdb.pouchdroid.migration.PouchDroidMigrationTask#getDocIdPrefix(String, String, String)}
+     * gives the prefix for one user's docs.
+     */
+    public ReplicationOptions setIdPrefix(String idPrefix) {
+        put(PouchOptions.ID_PREFIX, idPrefix);
+        return this;
+    }
+
+    /**
+     * The <code>id_prefix</code> option from any options map, or null if it's not there.
+     *
+     * @throws IllegalArgumentException if it's not a string
+     */
+    public static String getIdPrefix(Map<String, Object> options) {
+        Object value = options == null ? null : options.get(PouchOptions.ID_PREFIX);
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException(PouchOptions.ID_PREFIX + " must be a string: " + value);
+        }
+        return (String) value;
+    }
+
+    /**
+     * An int option from any options map, or 0 if it's not there.
+     */
+    public static int getInt(Map<String, Object> options, String key) {
+        Object value = options == null ? null : options.get(key);
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+}
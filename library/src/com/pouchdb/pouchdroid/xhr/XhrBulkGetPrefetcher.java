@@ -0,0 +1,645 @@
+package com.pouchdb.pouchdroid.xhr;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+
+import com.pouchdb.pouchdroid.util.UtilLogger;
+
+/**
+ * Cuts down on round trips during a pull replication.  PouchDB's replicator fetches missing revisions one
+ * <code>GET /db/docid?revs=true&attachments=true&rev=...</code> at a time, and never has more than one in flight, so
+ * there's no burst of requests for us to batch.  But since we've just streamed the <code>_changes</code> feed
+ * through {@link XhrJavascriptInterface}, we already know which revisions it's going to ask for next, and in which
+ * order.  So on the first GET we fetch it plus the next few with a single <code>POST /db/_bulk_get</code>, and answer
+ * the following GETs from memory.
+ *
+ * <p/>With a batches limit above 1 (see {@link #setTuning(String, int, int)}), the batches after that one are
+ * fetched ahead in the background, on the {@link XhrExecutor}, so that several of them can be on the wire at once.
+ *
+ * <p/>Servers without <code>_bulk_get</code> (CouchDB before 2.3) are detected on the first try, after which
+ * requests to that database go over the wire as usual.
+ */
+public class XhrBulkGetPrefetcher {
+
+    private static UtilLogger log = new UtilLogger(XhrBulkGetPrefetcher.class);
+
+    private static final String CHANGES_PATH = "/_changes";
+    private static final String REPLICATION_STYLE = "style=all_docs"; // the replicator always asks for every leaf
+    private static final int MAX_PENDING_CHANGES = 10000; // per db; older ones are dropped
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final XhrHttpClient client;
+    private final XhrMetrics metrics;
+    private final int defaultBatchSize;
+
+    // all guarded by this, keyed by db url (or db url + query, for the fetched docs)
+    private final Map<String, List<DocRev>> pendingChanges = new HashMap<String, List<DocRev>>();
+    private final Map<String, Map<DocRev, PrefetchedDoc>> prefetched = new HashMap<String, Map<DocRev, PrefetchedDoc>>();
+    private final Map<String, List<Batch>> inFlight = new HashMap<String, List<Batch>>();
+    private final Map<String, Boolean> bulkGetSupported = new HashMap<String, Boolean>();
+    private final Map<String, int[]> tunings = new HashMap<String, int[]>(); // {batchSize, batchesLimit}
+    private final Map<String, Map<Integer, String>> replications = new HashMap<String, Map<Integer, String>>();
+    private long batchSequence;
+
+    /* package */ XhrBulkGetPrefetcher(XhrHttpClient client, XhrMetrics metrics, int defaultBatchSize) {
+        this.client = client;
+        this.metrics = metrics;
+        this.defaultBatchSize = defaultBatchSize;
+    }
+
+    /**
+     * Override the batch size for one database, and let up to <code>batchesLimit</code> batches be in flight or
+     * waiting to be used at once.  Every batch is held in memory until the replicator gets to it, attachments and
+     * all, so keep <code>batchSize * batchesLimit</code> modest.  Pass 0 for either to use the default (the
+     * configured batch size, and one batch at a time).
+     *
+     * @param dbUrl e.g. <code>http://example.com:5984/mydb</code>, without credentials
+     */
+    public synchronized void setTuning(String dbUrl, int batchSize, int batchesLimit) {
+        if (batchSize <= 0 && batchesLimit <= 0) {
+            tunings.remove(dbUrl);
+        } else {
+            tunings.put(dbUrl, new int[] {batchSize, batchesLimit});
+        }
+    }
+
+    /**
+     * Register a pull replication from the database, so that we only prefetch the docs it'll ask for: those whose
+     * ids start with <code>idPrefix</code> (the <code>id_prefix</code> option), or every doc if it's null.  With
+     * several replications from the same database, a doc is prefetched if any of them wants it.
+     *
+     * @param dbUrl as for {@link #setTuning(String, int, int)}
+     * @param replicationId unique to the replication, to hand to {@link #removeReplication(String, int)} when it
+     *        ends
+     */
+    public synchronized void addReplication(String dbUrl, int replicationId, String idPrefix) {
+        Map<Integer, String> idPrefixes = replications.get(dbUrl);
+        if (idPrefixes == null) {
+            idPrefixes = new HashMap<Integer, String>();
+            replications.put(dbUrl, idPrefixes);
+        }
+        idPrefixes.put(replicationId, idPrefix == null || idPrefix.length() == 0 ? null : idPrefix);
+    }
+
+    /**
+     * Forget a replication registered with {@link #addReplication(String, int, String)}, once it's complete,
+     * paused or cancelled.  The other replications from the database keep their prefixes.  Once the last one is
+     * gone, the changes we were holding on to for the database, and any docs fetched for them, are dropped, and
+     * batches still on the wire are thrown away when they come back.
+     */
+    public synchronized void removeReplication(String dbUrl, int replicationId) {
+        Map<Integer, String> idPrefixes = replications.get(dbUrl);
+        if (idPrefixes == null) {
+            return;
+        }
+        idPrefixes.remove(replicationId);
+        if (!idPrefixes.isEmpty()) {
+            return;
+        }
+        replications.remove(dbUrl);
+        pendingChanges.remove(dbUrl);
+        removeByDbUrl(prefetched.keySet(), dbUrl);
+        removeByDbUrl(inFlight.keySet(), dbUrl);
+    }
+
+    /**
+     * Remember the revisions in a chunk of a <code>_changes</code> response.  The chunk must consist of whole
+     * lines, as CouchDB writes one change per line.  Only the feeds of replications registered with
+     * {@link #addReplication(String, int, String)} count; an app's own changes listener on the same database
+     * reads the feed without the replicator's <code>style=all_docs</code>, and never GETs the docs one by one.
+     */
+    /* package */ void onChanges(String changesUrl, String chunk) {
+        String dbUrl = getDbUrl(changesUrl);
+        if (dbUrl == null || !isReplicationFeed(changesUrl)) {
+            return;
+        }
+        List<String> idPrefixes;
+        synchronized (this) {
+            if (!replications.containsKey(dbUrl)) {
+                return;
+            }
+            idPrefixes = getIdPrefixes(dbUrl);
+        }
+        List<DocRev> docRevs = new ArrayList<DocRev>();
+        for (String line : chunk.split("\n")) {
+            line = line.trim();
+            if (line.endsWith(",")) {
+                line = line.substring(0, line.length() - 1);
+            }
+            if (!line.startsWith("{") || !line.contains("\"changes\"")) {
+                continue; // the results wrapper, last_seq, heartbeats...
+            }
+            try {
+                JsonNode change = objectMapper.readTree(line);
+                JsonNode id = change.get("id");
+                JsonNode changes = change.get("changes");
+                if (id == null || changes == null || !hasIdPrefix(id.asText(), idPrefixes)) {
+                    continue;
+                }
+                for (JsonNode rev : changes) {
+                    if (rev.has("rev")) {
+                        docRevs.add(new DocRev(id.asText(), rev.get("rev").asText()));
+                    }
+                }
+            } catch (IOException e) {
+                log.d("couldn't parse change %s", line);
+            }
+        }
+        if (docRevs.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            if (Boolean.FALSE.equals(bulkGetSupported.get(dbUrl))) {
+                return;
+            }
+            List<DocRev> pending = pendingChanges.get(dbUrl);
+            if (pending == null) {
+                pending = new ArrayList<DocRev>();
+                pendingChanges.put(dbUrl, pending);
+            }
+            pending.addAll(docRevs);
+            if (pending.size() > MAX_PENDING_CHANGES) {
+                pending.subList(0, pending.size() - MAX_PENDING_CHANGES).clear();
+            }
+        }
+    }
+
+    /**
+     * The body for a single-revision doc GET, if we have it or can get it as part of a batch; otherwise null, and
+     * the caller should send the request itself.
+     */
+    /* package */ String get(HttpUriRequest request, int timeout) {
+        if (!(request instanceof HttpGet)) {
+            return null;
+        }
+        DocRequest docRequest = parseDocRequest(request.getURI());
+        if (docRequest == null) {
+            return null;
+        }
+        Header[] headers = request.getAllHeaders(); // auth, cookies...
+
+        Batch batch;
+        synchronized (this) {
+            String doc = takePrefetched(docRequest);
+            if (doc != null) {
+                metrics.onPrefetchHit();
+                fetchAhead(docRequest, headers, timeout);
+                return doc;
+            }
+            batch = getInFlight(docRequest);
+            if (batch == null) {
+                List<DocRev> docRevs = takeBatch(docRequest);
+                if (docRevs == null) {
+                    return null;
+                }
+                batch = startBatch(docRequest, docRevs, headers, timeout);
+            }
+            fetchAhead(docRequest, headers, timeout);
+        }
+
+        if (!batch.runIfNotStarted()) {
+            // it's already on the wire, on another thread
+            try {
+                if (!batch.done.await(timeout > 0 ? timeout : client.getConfig().getSocketTimeout(),
+                        TimeUnit.MILLISECONDS)) {
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        synchronized (this) {
+            return takePrefetched(docRequest); // null if the batch failed, or the server left it out
+        }
+    }
+
+    /**
+     * The id prefixes of the replications from the database, or null if one of them wants every doc.
+     */
+    private List<String> getIdPrefixes(String dbUrl) {
+        Map<Integer, String> idPrefixes = replications.get(dbUrl);
+        if (idPrefixes.containsValue(null)) {
+            return null;
+        }
+        return new ArrayList<String>(idPrefixes.values());
+    }
+
+    private static boolean hasIdPrefix(String docId, List<String> idPrefixes) {
+        if (idPrefixes == null) {
+            return true;
+        }
+        for (String idPrefix : idPrefixes) {
+            if (docId.startsWith(idPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String takePrefetched(DocRequest docRequest) {
+        Map<DocRev, PrefetchedDoc> docs = prefetched.get(docRequest.getKey());
+        PrefetchedDoc doc = docs == null ? null : docs.remove(docRequest.docRev);
+        if (doc == null) {
+            return null;
+        }
+        // the replicator works through the feed in order, so anything left from earlier batches was skipped
+        for (Iterator<PrefetchedDoc> iterator = docs.values().iterator(); iterator.hasNext();) {
+            if (iterator.next().batchSequence < doc.batchSequence) {
+                iterator.remove();
+            }
+        }
+        return doc.json;
+    }
+
+    private Batch getInFlight(DocRequest docRequest) {
+        List<Batch> batches = inFlight.get(docRequest.getKey());
+        if (batches != null) {
+            for (Batch batch : batches) {
+                if (batch.docRevs.contains(docRequest.docRev)) {
+                    return batch;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Batch startBatch(DocRequest docRequest, List<DocRev> docRevs, Header[] headers, int timeout) {
+        Batch batch = new Batch(docRequest, docRevs, batchSequence++, headers, timeout);
+        List<Batch> batches = inFlight.get(docRequest.getKey());
+        if (batches == null) {
+            batches = new ArrayList<Batch>();
+            inFlight.put(docRequest.getKey(), batches);
+        }
+        batches.add(batch);
+        return batch;
+    }
+
+    /**
+     * Keep up to batchesLimit batches' worth of docs fetched or on their way, by starting more batches on the
+     * executor.
+     */
+    private void fetchAhead(DocRequest docRequest, Header[] headers, int timeout) {
+        int batchSize = getBatchSize(docRequest.dbUrl);
+        int maxDocs = getBatchesLimit(docRequest.dbUrl) * batchSize;
+
+        Map<DocRev, PrefetchedDoc> docs = prefetched.get(docRequest.getKey());
+        int numDocs = docs == null ? 0 : docs.size();
+        List<Batch> batches = inFlight.get(docRequest.getKey());
+        if (batches != null) {
+            for (Batch batch : batches) {
+                numDocs += batch.docRevs.size();
+            }
+        }
+
+        while (numDocs + batchSize <= maxDocs) {
+            List<DocRev> docRevs = takeNextBatch(docRequest.dbUrl);
+            if (docRevs == null) {
+                return;
+            }
+            Batch batch = startBatch(docRequest, docRevs, headers, timeout);
+            client.getExecutor().execute(docRequest.host, XhrExecutor.Priority.REPLICATION, batch);
+            numDocs += docRevs.size();
+        }
+    }
+
+    /**
+     * The requested revision plus the ones that follow it in the changes feed, or null if we never saw it (e.g.
+     * it's not part of a replication).
+     */
+    private List<DocRev> takeBatch(DocRequest docRequest) {
+        if (Boolean.FALSE.equals(bulkGetSupported.get(docRequest.dbUrl))) {
+            return null;
+        }
+        List<DocRev> pending = pendingChanges.get(docRequest.dbUrl);
+        int index = pending == null ? -1 : pending.indexOf(docRequest.docRev);
+        if (index == -1) {
+            return null;
+        }
+        List<DocRev> range = pending.subList(index, Math.min(pending.size(),
+                index + getBatchSize(docRequest.dbUrl)));
+        List<DocRev> batch = new ArrayList<DocRev>(range);
+        // the replicator works through the feed in order, so everything up to here is done with
+        pending.subList(0, index + batch.size()).clear();
+        return batch.size() > 1 ? batch : null; // a batch of one is just a slower GET
+    }
+
+    /**
+     * The next full batch from the changes feed, to fetch ahead of the replicator, or null if there isn't one yet.
+     */
+    private List<DocRev> takeNextBatch(String dbUrl) {
+        if (!Boolean.TRUE.equals(bulkGetSupported.get(dbUrl))) {
+            return null; // don't fire off several batches before we know the server can take them
+        }
+        List<DocRev> pending = pendingChanges.get(dbUrl);
+        int batchSize = getBatchSize(dbUrl);
+        if (pending == null || pending.size() < batchSize) {
+            return null;
+        }
+        List<DocRev> range = pending.subList(0, batchSize);
+        List<DocRev> batch = new ArrayList<DocRev>(range);
+        range.clear();
+        return batch;
+    }
+
+    private void fetch(Batch batch) {
+        DocRequest docRequest = batch.docRequest;
+        Map<DocRev, String> docs = null;
+        try {
+            docs = bulkGet(batch.headers, docRequest, batch.docRevs, batch.timeout);
+        } catch (IOException e) {
+            log.w(e, "_bulk_get failed, falling back to plain GETs");
+        }
+        synchronized (this) {
+            List<Batch> batches = inFlight.get(docRequest.getKey());
+            if (batches == null || !batches.remove(batch)) {
+                return; // the replication ended while it was on the wire
+            }
+            if (batches.isEmpty()) {
+                inFlight.remove(docRequest.getKey());
+            }
+            if (docs != null && !docs.isEmpty()) {
+                Map<DocRev, PrefetchedDoc> prefetchedDocs = prefetched.get(docRequest.getKey());
+                if (prefetchedDocs == null) {
+                    prefetchedDocs = new HashMap<DocRev, PrefetchedDoc>();
+                    prefetched.put(docRequest.getKey(), prefetchedDocs);
+                }
+                for (Map.Entry<DocRev, String> doc : docs.entrySet()) {
+                    prefetchedDocs.put(doc.getKey(), new PrefetchedDoc(doc.getValue(), batch.sequence));
+                }
+            }
+        }
+    }
+
+    private int getBatchSize(String dbUrl) {
+        int[] tuning = tunings.get(dbUrl);
+        return tuning != null && tuning[0] > 0 ? tuning[0] : defaultBatchSize;
+    }
+
+    private int getBatchesLimit(String dbUrl) {
+        int[] tuning = tunings.get(dbUrl);
+        return tuning != null && tuning[1] > 0 ? tuning[1] : 1;
+    }
+
+    private Map<DocRev, String> bulkGet(Header[] headers, DocRequest docRequest, List<DocRev> batch,
+            int timeout) throws IOException {
+
+        ObjectNode body = objectMapper.createObjectNode();
+        ArrayNode docs = body.putArray("docs");
+        for (DocRev docRev : batch) {
+            ObjectNode doc = docs.addObject();
+            doc.put("id", docRev.id);
+            doc.put("rev", docRev.rev);
+        }
+        HttpPost post = new HttpPost(docRequest.dbUrl + "/_bulk_get" + docRequest.query);
+        for (Header header : headers) {
+            post.addHeader(header);
+        }
+        post.setHeader("Accept", "application/json");
+        post.setHeader("Content-Type", "application/json");
+        post.setEntity(new ByteArrayEntity(objectMapper.writeValueAsBytes(body)));
+
+        log.d("fetching %d docs from %s", batch.size(), docRequest.dbUrl);
+        HttpResponse response = client.execute(post, timeout);
+        HttpEntity entity = response.getEntity();
+        try {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode != HttpStatus.SC_OK) {
+                if (statusCode == HttpStatus.SC_NOT_FOUND || statusCode == HttpStatus.SC_METHOD_NOT_ALLOWED
+                        || statusCode == HttpStatus.SC_BAD_REQUEST || statusCode == HttpStatus.SC_NOT_IMPLEMENTED) {
+                    log.i("%s doesn't support _bulk_get (%d)", docRequest.dbUrl, statusCode);
+                    synchronized (this) {
+                        bulkGetSupported.put(docRequest.dbUrl, false);
+                        pendingChanges.remove(docRequest.dbUrl);
+                    }
+                }
+                return null;
+            }
+            synchronized (this) {
+                bulkGetSupported.put(docRequest.dbUrl, true);
+            }
+            JsonNode results = objectMapper.readTree(entity.getContent()).get("results");
+
+            Map<DocRev, String> fetched = new HashMap<DocRev, String>();
+            if (results != null) {
+                for (JsonNode result : results) {
+                    for (JsonNode doc : result.path("docs")) {
+                        JsonNode ok = doc.get("ok");
+                        if (ok != null && ok.has("_id") && ok.has("_rev")) {
+                            // errors are left out, so that the GET for them reports the error as usual
+                            fetched.put(new DocRev(ok.get("_id").asText(), ok.get("_rev").asText()),
+                                    objectMapper.writeValueAsString(ok));
+                        }
+                    }
+                }
+            }
+            metrics.onBulkGet(fetched.size());
+            return fetched;
+        } finally {
+            if (entity != null) {
+                entity.consumeContent();
+            }
+        }
+    }
+
+    /**
+     * Parses <code>{dbUrl}/{docid}?revs=true&attachments=true&rev={rev}</code>, for a db whose changes we've seen.
+     */
+    private DocRequest parseDocRequest(URI uri) {
+        String url = uri.toString();
+        String dbUrl = null;
+        synchronized (this) {
+            for (String knownDbUrl : pendingChanges.keySet()) {
+                if (url.startsWith(knownDbUrl + "/")) {
+                    dbUrl = knownDbUrl;
+                    break;
+                }
+            }
+        }
+        if (dbUrl == null || uri.getRawQuery() == null) {
+            return null;
+        }
+        String encodedDocId = url.substring(dbUrl.length() + 1, url.indexOf('?'));
+        if (encodedDocId.startsWith("_design/") ? encodedDocId.indexOf('/', "_design/".length()) != -1
+                : (encodedDocId.startsWith("_") || encodedDocId.contains("/"))) {
+            return null; // checkpoints, attachments, db-level endpoints
+        }
+
+        String rev = null;
+        boolean revs = false;
+        boolean attachments = false;
+        for (String param : uri.getRawQuery().split("&")) {
+            if (param.startsWith("rev=")) {
+                rev = param.substring("rev=".length());
+            } else if (param.equals("revs=true")) {
+                revs = true;
+            } else if (param.equals("attachments=true")) {
+                attachments = true;
+            } else {
+                return null; // open_revs, conflicts... we'd have to translate those too
+            }
+        }
+        if (rev == null) {
+            return null;
+        }
+        try {
+            String query = revs ? (attachments ? "?revs=true&attachments=true" : "?revs=true")
+                    : (attachments ? "?attachments=true" : "");
+            return new DocRequest(dbUrl, uri.getHost(), new DocRev(URLDecoder.decode(encodedDocId, "UTF-8"),
+                    URLDecoder.decode(rev, "UTF-8")), query);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e); // every JVM has UTF-8
+        } catch (IllegalArgumentException e) {
+            return null; // malformed escape
+        }
+    }
+
+    private static void removeByDbUrl(Collection<String> keys, String dbUrl) {
+        for (Iterator<String> iterator = keys.iterator(); iterator.hasNext();) {
+            String key = iterator.next();
+            if (key.equals(dbUrl) || key.startsWith(dbUrl + "?")) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static boolean isReplicationFeed(String changesUrl) {
+        int index = changesUrl.indexOf('?');
+        if (index == -1) {
+            return false;
+        }
+        for (String param : changesUrl.substring(index + 1).split("&")) {
+            if (param.equals(REPLICATION_STYLE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getDbUrl(String changesUrl) {
+        int index = changesUrl.indexOf(CHANGES_PATH);
+        return index == -1 ? null : changesUrl.substring(0, index);
+    }
+
+    private static class DocRequest {
+
+        final String dbUrl;
+        final String host;
+        final DocRev docRev;
+        final String query;
+
+        DocRequest(String dbUrl, String host, DocRev docRev, String query) {
+            this.dbUrl = dbUrl;
+            this.host = host;
+            this.docRev = docRev;
+            this.query = query;
+        }
+
+        String getKey() {
+            return dbUrl + query;
+        }
+    }
+
+    /**
+     * One _bulk_get.  It's run by whoever gets to it first: the executor, if it was fetched ahead, or the
+     * replicator's GET that needs it.
+     */
+    private class Batch implements Runnable {
+
+        final DocRequest docRequest;
+        final List<DocRev> docRevs;
+        final long sequence;
+        final Header[] headers;
+        final int timeout;
+        final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        Batch(DocRequest docRequest, List<DocRev> docRevs, long sequence, Header[] headers, int timeout) {
+            this.docRequest = docRequest;
+            this.docRevs = docRevs;
+            this.sequence = sequence;
+            this.headers = headers;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public void run() {
+            runIfNotStarted();
+        }
+
+        /**
+         * @return false if another thread got to it first
+         */
+        boolean runIfNotStarted() {
+            if (!started.compareAndSet(false, true)) {
+                return false;
+            }
+            try {
+                fetch(this);
+            } finally {
+                done.countDown();
+            }
+            return true;
+        }
+    }
+
+    private static class PrefetchedDoc {
+
+        final String json;
+        final long batchSequence;
+
+        PrefetchedDoc(String json, long batchSequence) {
+            this.json = json;
+            this.batchSequence = batchSequence;
+        }
+    }
+
+    private static class DocRev {
+
+        final String id;
+        final String rev;
+
+        DocRev(String id, String rev) {
+            this.id = id;
+            this.rev = rev;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * id.hashCode() + rev.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof DocRev)) {
+                return false;
+            }
+            DocRev other = (DocRev) obj;
+            return id.equals(other.id) && rev.equals(other.rev);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.pouchdb.pouchdroid.xhr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import com.pouchdb.pouchdroid.util.UtilLogger;
+
+/**
+ * On-disk cache of GET responses that came with an ETag.  Entries are never served without asking the server
+ * first; instead we send <code>If-None-Match</code>, and if CouchDB answers 304 the cached body is handed to
+ * PouchDB as if it had been downloaded.  That makes it safe for anything CouchDB puts an ETag on (docs, _local
+ * checkpoints, attachments), while still saving the transfer when nothing changed.
+ *
+ * <p/>The least recently used entries are evicted once the cache grows beyond its max size.
+ */
+public class XhrCache {
+
+    private static UtilLogger log = new UtilLogger(XhrCache.class);
+
+    private static final int VERSION = 1;
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAX_ENTRY_FRACTION = 4; // no single entry may take more than 1/4 of the cache
+
+    private final File directory;
+    private final long maxSize;
+
+    // guarded by this
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long size;
+
+    /* package */ XhrCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        loadIndex();
+    }
+
+    /**
+     * Cached response for the given request, or null.
+     */
+    /* package */ Entry get(String key) {
+        synchronized (this) {
+            if (index.get(key) == null) {
+                return null;
+            }
+        }
+        File file = getFile(key);
+        try {
+            Entry entry = readEntry(file);
+            file.setLastModified(System.currentTimeMillis()); // so the LRU order survives a restart
+            return entry;
+        } catch (IOException e) {
+            log.w(e, "unable to read cache entry %s", key);
+            remove(key);
+            return null;
+        }
+    }
+
+    /* package */ void put(String key, Entry entry) {
+        if (entry.body.length > maxSize / MAX_ENTRY_FRACTION) {
+            return;
+        }
+        File file = getFile(key);
+        File tempFile = new File(directory, key + TEMP_SUFFIX + Thread.currentThread().getId());
+        try {
+            writeEntry(tempFile, entry);
+            synchronized (this) {
+                if (!tempFile.renameTo(file)) {
+                    throw new IOException("unable to rename " + tempFile);
+                }
+                Long oldLength = index.put(key, file.length());
+                size += file.length() - (oldLength == null ? 0 : oldLength);
+                trimToSize();
+            }
+        } catch (IOException e) {
+            log.w(e, "unable to write cache entry %s", key);
+            tempFile.delete();
+        }
+    }
+
+    /* package */ synchronized void remove(String key) {
+        Long length = index.remove(key);
+        if (length != null) {
+            size -= length;
+        }
+        getFile(key).delete();
+    }
+
+    public synchronized void clear() {
+        for (String key : index.keySet()) {
+            getFile(key).delete();
+        }
+        index.clear();
+        size = 0;
+    }
+
+    /**
+     * Current size of the cache on disk, in bytes.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Cache key for a request: its URL, plus the headers that change what CouchDB sends back.
+     */
+    /* package */ static String getKey(HttpUriRequest request) {
+        StringBuilder key = new StringBuilder(request.getURI().toString());
+        for (Header header : request.getHeaders("Accept")) {
+            key.append('\n').append(header.getValue());
+        }
+        return md5Hex(key.toString());
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            size -= eldest.getValue();
+            getFile(eldest.getKey()).delete();
+            log.d("evicted %s", eldest.getKey());
+        }
+    }
+
+    private synchronized void loadIndex() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            log.w("unable to create cache directory %s", directory);
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+
+            @Override
+            public int compare(File lhs, File rhs) {
+                long diff = lhs.lastModified() - rhs.lastModified();
+                return diff < 0 ? -1 : (diff == 0 ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(ENTRY_SUFFIX)) {
+                index.put(name.substring(0, name.length() - ENTRY_SUFFIX.length()), file.length());
+                size += file.length();
+            } else {
+                file.delete(); // leftover from a write that never finished
+            }
+        }
+        trimToSize();
+        log.d("loaded %d cache entries, %d bytes", index.size(), size);
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key + ENTRY_SUFFIX);
+    }
+
+    private static Entry readEntry(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != VERSION) {
+                throw new IOException("unknown cache entry version");
+            }
+            String etag = in.readUTF();
+            int numHeaders = in.readInt();
+            Map<String, String> headers = new HashMap<String, String>();
+            for (int i = 0; i < numHeaders; i++) {
+                headers.put(in.readUTF(), in.readUTF());
+            }
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Entry(etag, headers, body);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeEntry(File file, Entry entry) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(VERSION);
+            out.writeUTF(entry.etag);
+            out.writeInt(entry.headers.size());
+            for (Map.Entry<String, String> header : entry.headers.entrySet()) {
+                out.writeUTF(header.getKey());
+                out.writeUTF(header.getValue());
+            }
+            out.writeInt(entry.body.length);
+            out.write(entry.body);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String md5Hex(String str) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(str.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e); // every JVM has MD5
+        } catch (IOException e) {
+            throw new RuntimeException(e); // and UTF-8
+        }
+    }
+
+    /* package */ static class Entry {
+
+        final String etag;
+        final Map<String, String> headers;
+        final byte[] body;
+
+        Entry(String etag, Map<String, String> headers, byte[] body) {
+            this.etag = etag;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+}
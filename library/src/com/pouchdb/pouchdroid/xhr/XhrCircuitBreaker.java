@@ -0,0 +1,100 @@
+package com.pouchdb.pouchdroid.xhr;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import android.os.SystemClock;
+
+import com.pouchdb.pouchdroid.util.UtilLogger;
+
+/**
+ * Per-host circuit breaker.  After {@link XhrConfig#getCircuitBreakerThreshold()} requests in a row have failed (each
+ * one counted once, after its retries), requests to the host fail right away for
+ * {@link XhrConfig#getCircuitBreakerCooldown()} ms, instead of each one waiting out its own timeout on a dead link.  Then a single request is let through to probe the host; if it
+ * succeeds, the circuit closes again.
+ */
+public class XhrCircuitBreaker {
+
+    private static UtilLogger log = new UtilLogger(XhrCircuitBreaker.class);
+
+    private final int threshold;
+    private final long cooldown;
+    private final XhrMetrics metrics;
+
+    // guarded by this
+    private final Map<String, HostState> hosts = new HashMap<String, HostState>();
+
+    /* package */ XhrCircuitBreaker(XhrConfig config, XhrMetrics metrics) {
+        this.threshold = config.getCircuitBreakerThreshold();
+        this.cooldown = config.getCircuitBreakerCooldown();
+        this.metrics = metrics;
+    }
+
+    /**
+     * Whether a request to the host may go out.  Ask once per request, not once per retry.  If this returns true,
+     * the caller must report back exactly once, when the request is done, with {@link #onSuccess(String)},
+     * {@link #onFailure(String)} or {@link #onCancelled(String)}.
+     */
+    public synchronized boolean allowRequest(String host) {
+        if (threshold <= 0) {
+            return true;
+        }
+        HostState state = hosts.get(key(host));
+        if (state == null || !state.open) {
+            return true;
+        }
+        if (state.probing || SystemClock.elapsedRealtime() - state.openedAt < cooldown) {
+            metrics.onCircuitBreakerRejection();
+            return false;
+        }
+        state.probing = true; // half-open: let this one through and see how it goes
+        return true;
+    }
+
+    public synchronized void onSuccess(String host) {
+        if (hosts.remove(key(host)) != null) {
+            log.d("circuit closed for %s", host);
+        }
+    }
+
+    public synchronized void onFailure(String host) {
+        if (threshold <= 0) {
+            return;
+        }
+        HostState state = hosts.get(key(host));
+        if (state == null) {
+            state = new HostState();
+            hosts.put(key(host), state);
+        }
+        state.failures++;
+        if (state.probing || (!state.open && state.failures >= threshold)) {
+            log.w("circuit opened for %s after %d failures", host, state.failures);
+            state.open = true;
+            state.openedAt = SystemClock.elapsedRealtime();
+            state.probing = false;
+            metrics.onCircuitBreakerTrip();
+        }
+    }
+
+    /**
+     * The request was aborted before we found out whether the host is back.
+     */
+    public synchronized void onCancelled(String host) {
+        HostState state = hosts.get(key(host));
+        if (state != null) {
+            state.probing = false;
+        }
+    }
+
+    private static String key(String host) {
+        return host == null ? "" : host.toLowerCase(Locale.US);
+    }
+
+    private static class HostState {
+        int failures;
+        boolean open;
+        long openedAt;
+        boolean probing;
+    }
+}
@@ -0,0 +1,262 @@
+package com.pouchdb.pouchdroid.xhr;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Tuning knobs for the native HTTP layer behind {@link XhrJavascriptInterface}.  All PouchDroid instances share
+ * the same HTTP client, so apply a config with {@link XhrHttpClient#configure(XhrConfig)}, ideally before the first
+ * request goes out.
+ *
+ * <p/>The defaults are tuned for replication against a single CouchDB over a mobile network.
+ */
+public class XhrConfig {
+
+    private int maxConnectionsPerHost = 4;
+    private int maxTotalConnections = 8;
+    private int connectionTimeout = 20000; // ms
+    private int socketTimeout = 60000; // ms, used if the XHR doesn't set its own timeout
+    private int connectionPoolTimeout = 10000; // ms to wait for a free connection from the pool
+    private long keepAliveDuration = 30000; // ms an idle connection is kept around for re-use
+    private int maxResponseSize = 16 * 1024 * 1024; // bytes; larger responses fail rather than OOM
+    private boolean acceptCompressedResponses = true;
+    private Set<String> gzipRequestHosts = new HashSet<String>();
+    private int gzipRequestMinSize = 1024; // bytes; smaller bodies aren't worth the CPU
+    private int executorThreads = 8;
+    private File cacheDirectory; // null means no cache
+    private long cacheMaxSize = 10 * 1024 * 1024; // bytes
+    private int bulkGetBatchSize = 25; // docs; 0 turns prefetching off
+    private int maxRetries = 3;
+    private long retryBaseDelay = 500; // ms; doubles with every retry
+    private long retryMaxDelay = 15000; // ms
+    private int circuitBreakerThreshold = 5; // consecutive failures; 0 turns the breaker off
+    private long circuitBreakerCooldown = 30000; // ms
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public XhrConfig setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        return this;
+    }
+
+    public int getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    public XhrConfig setMaxTotalConnections(int maxTotalConnections) {
+        this.maxTotalConnections = maxTotalConnections;
+        return this;
+    }
+
+    public int getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public XhrConfig setConnectionTimeout(int connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+        return this;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public XhrConfig setSocketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+        return this;
+    }
+
+    public int getConnectionPoolTimeout() {
+        return connectionPoolTimeout;
+    }
+
+    public XhrConfig setConnectionPoolTimeout(int connectionPoolTimeout) {
+        this.connectionPoolTimeout = connectionPoolTimeout;
+        return this;
+    }
+
+    public long getKeepAliveDuration() {
+        return keepAliveDuration;
+    }
+
+    /**
+     * How long an idle connection stays in the pool.  If the server sends a shorter <code>Keep-Alive</code>
+     * timeout, the server's value wins.
+     */
+    public XhrConfig setKeepAliveDuration(long keepAliveDuration) {
+        this.keepAliveDuration = keepAliveDuration;
+        return this;
+    }
+
+    public int getMaxResponseSize() {
+        return maxResponseSize;
+    }
+
+    /**
+     * Largest response body, in bytes, that we'll read into memory.  Bigger responses are reported to
+     * PouchDB as an error.
+     */
+    public XhrConfig setMaxResponseSize(int maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+        return this;
+    }
+
+    public boolean isAcceptCompressedResponses() {
+        return acceptCompressedResponses;
+    }
+
+    /**
+     * Whether to send <code>Accept-Encoding: gzip, deflate</code>.  Compressed responses are decoded
+     * transparently before they reach PouchDB.  Defaults to true.
+     */
+    public XhrConfig setAcceptCompressedResponses(boolean acceptCompressedResponses) {
+        this.acceptCompressedResponses = acceptCompressedResponses;
+        return this;
+    }
+
+    public boolean isGzipRequestHost(String host) {
+        return host != null && gzipRequestHosts.contains(host.toLowerCase(Locale.US));
+    }
+
+    /**
+     * Gzip request bodies (e.g. <code>_bulk_docs</code>) sent to this host.  Only enable this for servers
+     * that accept <code>Content-Encoding: gzip</code>, which is why it's opt-in per host.
+     */
+    public XhrConfig addGzipRequestHost(String host) {
+        gzipRequestHosts.add(host.toLowerCase(Locale.US));
+        return this;
+    }
+
+    public int getGzipRequestMinSize() {
+        return gzipRequestMinSize;
+    }
+
+    public XhrConfig setGzipRequestMinSize(int gzipRequestMinSize) {
+        this.gzipRequestMinSize = gzipRequestMinSize;
+        return this;
+    }
+
+    public int getExecutorThreads() {
+        return executorThreads;
+    }
+
+    /**
+     * Number of threads running XHRs.  No more than {@link #getMaxConnectionsPerHost()} of them work on the
+     * same host at once.
+     */
+    public XhrConfig setExecutorThreads(int executorThreads) {
+        this.executorThreads = executorThreads;
+        return this;
+    }
+
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Enable the {@link XhrCache}, which keeps GET responses that have an ETag in this directory, e.g.
+     * <code>new File(context.getCacheDir(), "pouchdroid-xhr")</code>.  Off by default.
+     */
+    public XhrConfig setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+        return this;
+    }
+
+    public long getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public XhrConfig setCacheMaxSize(long cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+        return this;
+    }
+
+    public int getBulkGetBatchSize() {
+        return bulkGetBatchSize;
+    }
+
+    /**
+     * How many revisions {@link XhrBulkGetPrefetcher} fetches with a single <code>_bulk_get</code> during a pull
+     * replication.  Set to 0 to always fetch docs one at a time, like PouchDB asks for them.
+     */
+    public XhrConfig setBulkGetBatchSize(int bulkGetBatchSize) {
+        this.bulkGetBatchSize = bulkGetBatchSize;
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * How often a failed request is retried.  Requests that never reached the server are always retried; others
+     * only if they're safe to repeat (GETs, and CouchDB's read-only POSTs like <code>_revs_diff</code>).
+     */
+    public XhrConfig setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public long getRetryBaseDelay() {
+        return retryBaseDelay;
+    }
+
+    /**
+     * Upper bound of the wait before the first retry, in ms.  It doubles for every retry after that, up to
+     * {@link #getRetryMaxDelay()}, and the actual wait is picked at random below it, so that clients that lost
+     * the network at the same time don't all come back at the same time.
+     */
+    public XhrConfig setRetryBaseDelay(long retryBaseDelay) {
+        this.retryBaseDelay = retryBaseDelay;
+        return this;
+    }
+
+    public long getRetryMaxDelay() {
+        return retryMaxDelay;
+    }
+
+    public XhrConfig setRetryMaxDelay(long retryMaxDelay) {
+        this.retryMaxDelay = retryMaxDelay;
+        return this;
+    }
+
+    public int getCircuitBreakerThreshold() {
+        return circuitBreakerThreshold;
+    }
+
+    /**
+     * Number of failed requests in a row after which requests to that host fail fast.  See
+     * {@link XhrCircuitBreaker}.
+     */
+    public XhrConfig setCircuitBreakerThreshold(int circuitBreakerThreshold) {
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+        return this;
+    }
+
+    public long getCircuitBreakerCooldown() {
+        return circuitBreakerCooldown;
+    }
+
+    public XhrConfig setCircuitBreakerCooldown(long circuitBreakerCooldown) {
+        this.circuitBreakerCooldown = circuitBreakerCooldown;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "XhrConfig [maxConnectionsPerHost=" + maxConnectionsPerHost + ", maxTotalConnections="
+                + maxTotalConnections + ", connectionTimeout=" + connectionTimeout + ", socketTimeout="
+                + socketTimeout + ", connectionPoolTimeout=" + connectionPoolTimeout + ", keepAliveDuration="
+                + keepAliveDuration + ", maxResponseSize=" + maxResponseSize + ", acceptCompressedResponses="
+                + acceptCompressedResponses + ", gzipRequestHosts=" + gzipRequestHosts + ", gzipRequestMinSize="
+                + gzipRequestMinSize + ", executorThreads=" + executorThreads
+                + ", cacheDirectory=" + cacheDirectory + ", cacheMaxSize=" + cacheMaxSize + ", bulkGetBatchSize="
+                + bulkGetBatchSize + ", maxRetries=" + maxRetries + ", retryBaseDelay=" + retryBaseDelay
+                + ", retryMaxDelay=" + retryMaxDelay + ", circuitBreakerThreshold=" + circuitBreakerThreshold
+                + ", circuitBreakerCooldown=" + circuitBreakerCooldown + "]";
+    }
+}
@@ -0,0 +1,305 @@
+package com.pouchdb.pouchdroid.xhr;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.annotation.SuppressLint;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+
+import com.pouchdb.pouchdroid.util.UtilLogger;
+
+/**
+ * Thread pool that runs the XHRs, so that they don't compete with the app's own AsyncTasks (or with the
+ * migration task) for AsyncTask's shared executor.
+ *
+ * <p/>At most {@link XhrConfig#getMaxConnectionsPerHost()} requests run against the same host at once; the rest
+ * wait their turn, so that a replication can't starve other hosts of threads while it's blocked on the connection
+ * pool.  Waiting requests are started in {@link Priority} order, and first-come-first-served within a priority.
+ */
+public class XhrExecutor {
+
+    private static UtilLogger log = new UtilLogger(XhrExecutor.class);
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    // only waits out delays, then hands the task to an executor, so one thread is plenty
+    private static final ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "PouchDroid XHR scheduler");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public static enum Priority {
+        /** Requests somebody is waiting on, e.g. a get() or put() against a remote db. */
+        INTERACTIVE,
+        /** Replication batches: _changes, _revs_diff, _bulk_docs, checkpoints... */
+        REPLICATION;
+    }
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+    private final int maxRequestsPerHost;
+    private final XhrMetrics metrics;
+
+    // guarded by this
+    private final Map<String, Integer> maxRequestsForHost = new HashMap<String, Integer>();
+    private final Map<String, Integer> runningPerHost = new HashMap<String, Integer>();
+    private final Map<String, Queue<XhrTask>> waitingPerHost = new HashMap<String, Queue<XhrTask>>();
+
+    @SuppressLint("NewApi")
+    /* package */ XhrExecutor(XhrConfig config, XhrMetrics metrics) {
+        this.maxRequestsPerHost = config.getMaxConnectionsPerHost();
+        this.metrics = metrics;
+
+        // a priority queue is unbounded, so the pool never grows past its core size
+        executor = new ThreadPoolExecutor(config.getExecutorThreads(), config.getExecutorThreads(),
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), new XhrThreadFactory());
+        if (Build.VERSION.SDK_INT >= 9) {
+            // let the threads die off when we're not replicating
+            executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Run the request on the pool, once there's a free slot for its host.
+     */
+    public void execute(String host, Priority priority, Runnable runnable) {
+        String hostKey = getHostKey(host);
+        XhrTask task = new XhrTask(hostKey, priority, sequence.getAndIncrement(), runnable);
+        metrics.onTaskQueued();
+
+        synchronized (this) {
+            Integer running = runningPerHost.get(hostKey);
+            if (running != null && running >= getMaxRequestsPerHost(hostKey)) {
+                Queue<XhrTask> waiting = waitingPerHost.get(hostKey);
+                if (waiting == null) {
+                    waiting = new PriorityQueue<XhrTask>();
+                    waitingPerHost.put(hostKey, waiting);
+                }
+                waiting.add(task);
+                return;
+            }
+            runningPerHost.put(hostKey, running == null ? 1 : running + 1);
+        }
+        dispatch(task);
+    }
+
+    /**
+     * Queue the request once the delay is up, e.g. to retry it after a backoff.  It holds neither a thread nor a slot
+     * for its host while it waits, so it doesn't hold up the host's other requests.
+     */
+    public void executeLater(final String host, final Priority priority, final Runnable runnable, long delayMillis) {
+        scheduler.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                // if a new config has replaced us in the meantime, this passes it on to the new executor
+                execute(host, priority, runnable);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Override {@link XhrConfig#getMaxConnectionsPerHost()} for one host, e.g. to give a replication over a fast
+     * network more parallel requests.  The connection pool follows the same limit.  Pass 0 to go back to the default.
+     */
+    public void setMaxRequestsPerHost(String host, int maxRequests) {
+        String hostKey = getHostKey(host);
+        List<XhrTask> toStart = new ArrayList<XhrTask>();
+        synchronized (this) {
+            if (maxRequests > 0) {
+                maxRequestsForHost.put(hostKey, maxRequests);
+            } else {
+                maxRequestsForHost.remove(hostKey);
+            }
+            // if the limit went up, start whatever has been waiting for it
+            Queue<XhrTask> waiting = waitingPerHost.get(hostKey);
+            Integer running = runningPerHost.get(hostKey);
+            int numRunning = running == null ? 0 : running;
+            while (waiting != null && !waiting.isEmpty() && numRunning < getMaxRequestsPerHost(hostKey)) {
+                toStart.add(waiting.poll());
+                numRunning++;
+            }
+            if (waiting != null && waiting.isEmpty()) {
+                waitingPerHost.remove(hostKey);
+            }
+            if (numRunning > 0) {
+                runningPerHost.put(hostKey, numRunning);
+            }
+        }
+        for (XhrTask task : toStart) {
+            dispatch(task);
+        }
+    }
+
+    public synchronized int getMaxRequestsPerHost(String host) {
+        Integer maxRequests = maxRequestsForHost.get(getHostKey(host));
+        return maxRequests != null ? maxRequests : maxRequestsPerHost;
+    }
+
+    /**
+     * Stop taking new requests.  Requests that are already running finish here, and the ones still waiting for a
+     * slot, or handed to us later, are passed on to the current {@link XhrHttpClient}'s executor.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Wait for the requests that were running (or had been handed to the pool) when we were shut down to finish.
+     *
+     * @return true if they have, false if the timeout ran out first
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    private void dispatch(XhrTask task) {
+        if (!executor.isShutdown()) {
+            try {
+                executor.execute(task);
+                return;
+            } catch (RejectedExecutionException e) {
+                // shut down in the meantime
+            }
+        }
+        handOver(task);
+    }
+
+    /**
+     * We've been replaced by a new config, so give the task, and everything else that's waiting for its host, to
+     * the executor that replaced us.  They can't run on the caller's thread, which may well be the JS bridge's.
+     */
+    private void handOver(XhrTask task) {
+        List<XhrTask> toHandOver = new ArrayList<XhrTask>();
+        toHandOver.add(task);
+        synchronized (this) {
+            Queue<XhrTask> waiting = waitingPerHost.remove(task.hostKey);
+            while (waiting != null && !waiting.isEmpty()) {
+                toHandOver.add(waiting.poll());
+            }
+            // the task had a slot, the waiting ones didn't
+            int running = runningPerHost.get(task.hostKey) - 1;
+            if (running > 0) {
+                runningPerHost.put(task.hostKey, running);
+            } else {
+                runningPerHost.remove(task.hostKey);
+            }
+        }
+        XhrExecutor current = XhrHttpClient.getInstance().getExecutor();
+        for (XhrTask next : toHandOver) {
+            metrics.onTaskHandedOver();
+            if (current != this) {
+                current.execute(next.hostKey, next.priority, next.runnable);
+            } else {
+                // shut down without being replaced; nobody else will run it
+                new XhrThreadFactory().newThread(next.runnable).start();
+            }
+        }
+    }
+
+    private void onTaskFinished(String hostKey) {
+        XhrTask next = null;
+        synchronized (this) {
+            Queue<XhrTask> waiting = waitingPerHost.get(hostKey);
+            if (waiting != null) {
+                next = waiting.poll();
+                if (waiting.isEmpty()) {
+                    waitingPerHost.remove(hostKey);
+                }
+            }
+            if (next == null) {
+                int running = runningPerHost.get(hostKey) - 1;
+                if (running > 0) {
+                    runningPerHost.put(hostKey, running);
+                } else {
+                    runningPerHost.remove(hostKey);
+                }
+            } // else the host's slot passes straight to the next request
+        }
+        if (next != null) {
+            dispatch(next);
+        }
+    }
+
+    private static String getHostKey(String host) {
+        return host == null ? "" : host.toLowerCase(Locale.US);
+    }
+
+    private class XhrTask implements Runnable, Comparable<XhrTask> {
+
+        private final String hostKey;
+        private final Priority priority;
+        private final long sequence;
+        private final Runnable runnable;
+        private final long queuedAt = SystemClock.elapsedRealtime();
+
+        public XhrTask(String hostKey, Priority priority, long sequence, Runnable runnable) {
+            this.hostKey = hostKey;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            long startedAt = SystemClock.elapsedRealtime();
+            metrics.onTaskStarted(startedAt - queuedAt);
+            try {
+                runnable.run();
+            } catch (RuntimeException e) {
+                log.e(e, "unexpected exception in xhr task");
+            } finally {
+                metrics.onTaskFinished(SystemClock.elapsedRealtime() - startedAt);
+                onTaskFinished(hostKey);
+            }
+        }
+
+        @Override
+        public int compareTo(XhrTask another) {
+            int result = priority.compareTo(another.priority);
+            if (result == 0) {
+                result = sequence < another.sequence ? -1 : (sequence == another.sequence ? 0 : 1);
+            }
+            return result;
+        }
+    }
+
+    private static class XhrThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    // same as AsyncTask, so we don't steal time from the UI thread
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "PouchDroid XHR #" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package com.pouchdb.pouchdroid.xhr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRoute;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import com.pouchdb.pouchdroid.util.UtilLogger;
+
+/**
+ * Shared, pooled HTTP client for all XHRs.  PouchDB's http adapter fires off hundreds of small requests
+ * (_revs_diff, _bulk_docs, _changes...) to the same host during a single replication, so keeping the
+ * connections alive saves us a TCP and TLS handshake for almost every one of them.
+ */
+public class XhrHttpClient {
+
+    private static UtilLogger log = new UtilLogger(XhrHttpClient.class);
+    
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final long IDLE_CONNECTIONS_CHECK_SECONDS = 5; // while a replaced client waits for its requests
+
+    private static final XhrMetrics metrics = new XhrMetrics();
+    private static XhrHttpClient instance;
+
+    private final XhrConfig config;
+    private final ClientConnectionManager connectionManager;
+    private final DefaultHttpClient client;
+    private final XhrExecutor executor;
+    private final XhrCache cache;
+    private final XhrBulkGetPrefetcher prefetcher;
+    private final XhrCircuitBreaker circuitBreaker;
+
+    private XhrHttpClient(final XhrConfig config) {
+        this.config = config;
+        this.executor = new XhrExecutor(config, metrics);
+        this.cache = config.getCacheDirectory() == null ? null
+                : new XhrCache(config.getCacheDirectory(), config.getCacheMaxSize());
+        this.circuitBreaker = new XhrCircuitBreaker(config, metrics);
+        this.prefetcher = config.getBulkGetBatchSize() <= 0 ? null
+                : new XhrBulkGetPrefetcher(this, metrics, config.getBulkGetBatchSize());
+
+        HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setConnectionTimeout(params, config.getConnectionTimeout());
+        HttpConnectionParams.setSoTimeout(params, config.getSocketTimeout());
+        HttpConnectionParams.setStaleCheckingEnabled(params, true);
+        HttpProtocolParams.setUseExpectContinue(params, false); // CouchDB doesn't need the extra round trip
+        ConnManagerParams.setMaxTotalConnections(params, config.getMaxTotalConnections());
+        ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRoute() {
+
+            @Override
+            public int getMaxForRoute(HttpRoute route) {
+                // same as the executor, which may have been told to allow more for some hosts
+                return executor.getMaxRequestsPerHost(route.getTargetHost().getHostName());
+            }
+        });
+        ConnManagerParams.setTimeout(params, config.getConnectionPoolTimeout());
+
+        SchemeRegistry schemeRegistry = new SchemeRegistry();
+        schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+        schemeRegistry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+
+        connectionManager = new ThreadSafeClientConnManager(params, schemeRegistry) {
+
+            @Override
+            protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schreg) {
+                return new CountingConnectionOperator(schreg);
+            }
+        };
+
+        client = new DefaultHttpClient(connectionManager, params) {
+
+            @Override
+            protected ConnectionKeepAliveStrategy createConnectionKeepAliveStrategy() {
+                return new DefaultConnectionKeepAliveStrategy() {
+
+                    @Override
+                    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                        long serverDuration = super.getKeepAliveDuration(response, context);
+                        return serverDuration > 0
+                                ? Math.min(serverDuration, config.getKeepAliveDuration())
+                                : config.getKeepAliveDuration();
+                    }
+                };
+            }
+        };
+        
+        // XhrJavascriptInterface does its own retrying, with backoff
+        client.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+        
+        client.addRequestInterceptor(new HttpRequestInterceptor() {
+            
+            @Override
+            public void process(HttpRequest request, HttpContext context) {
+                if (config.isAcceptCompressedResponses() && !request.containsHeader(HEADER_ACCEPT_ENCODING)) {
+                    request.addHeader(HEADER_ACCEPT_ENCODING, "gzip, deflate");
+                }
+            }
+        });
+        
+        client.addResponseInterceptor(new HttpResponseInterceptor() {
+            
+            @Override
+            public void process(HttpResponse response, HttpContext context) {
+                HttpEntity entity = response.getEntity();
+                if (entity != null) {
+                    response.setEntity(new DecodingEntity(entity));
+                }
+            }
+        });
+    }
+
+    public static synchronized XhrHttpClient getInstance() {
+        if (instance == null) {
+            instance = new XhrHttpClient(new XhrConfig());
+        }
+        return instance;
+    }
+
+    /**
+     * Replace the shared client with one built from the given config.  Requests that are already running finish
+     * on the old client, whose connections are closed once they're done; everything else goes to the new one.
+     */
+    public static synchronized void configure(XhrConfig config) {
+        log.i("configure(%s)", config);
+        XhrHttpClient oldInstance = instance;
+        instance = new XhrHttpClient(config);
+        if (oldInstance != null) {
+            oldInstance.executor.shutdown();
+            oldInstance.shutdownConnectionsWhenDone();
+        }
+    }
+
+    /**
+     * Shut down the connection pool once the executor's requests have finished.  Shutting it down right away would
+     * fail them halfway, and they can't all be retried: a push's _bulk_docs, a PUT, a checkpoint write...  Until then,
+     * connections are closed as soon as they're idle, since nothing new will ask for them.
+     */
+    private void shutdownConnectionsWhenDone() {
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    while (!executor.awaitTermination(IDLE_CONNECTIONS_CHECK_SECONDS, TimeUnit.SECONDS)) {
+                        connectionManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    log.d("old client's requests are done, closing its connections");
+                    connectionManager.shutdown();
+                }
+            }
+        }, "PouchDroid XHR old connections");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static XhrMetrics getMetrics() {
+        return metrics;
+    }
+
+    public XhrConfig getConfig() {
+        return config;
+    }
+
+    public XhrExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * The response cache, or null if {@link XhrConfig#setCacheDirectory(java.io.File)} wasn't set.
+     */
+    public XhrCache getCache() {
+        return cache;
+    }
+
+    /**
+     * The _bulk_get prefetcher, or null if {@link XhrConfig#setBulkGetBatchSize(int)} is 0.
+     */
+    public XhrBulkGetPrefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
+    public XhrCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Apply a replication's tuning to the remote database it talks to: how many docs to fetch per _bulk_get, how
+     * many of those to have in flight, and how many requests to run against its host at once.  Pass 0 to leave a
+     * setting at its default.  The settings hold until they're changed, or until {@link #configure(XhrConfig)}
+     * replaces the client.
+     *
+     * @param remoteDbUrl the database URL as given to PouchDB; non-HTTP (i.e. local) databases are ignored
+     */
+    public void tuneReplication(String remoteDbUrl, int batchSize, int batchesLimit, int maxConnections) {
+        URI uri = parseDbUrl(remoteDbUrl);
+        if (uri == null) {
+            return;
+        }
+        if (maxConnections > 0) {
+            executor.setMaxRequestsPerHost(uri.getHost(), Math.min(maxConnections, config.getMaxTotalConnections()));
+        }
+        if (prefetcher != null) {
+            prefetcher.setTuning(getDbUrl(uri), batchSize, batchesLimit);
+        }
+    }
+
+    /**
+     * Tell the prefetcher that a pull replication from the remote database has started, and which docs it wants:
+     * those whose ids start with <code>idPrefix</code>, or every doc if it's null.  Call
+     * {@link #endReplication(String, int)} with the same id once it's over.
+     *
+     * @param remoteDbUrl the database URL as given to PouchDB; non-HTTP (i.e. local) databases are ignored
+     */
+    public void startReplication(String remoteDbUrl, int replicationId, String idPrefix) {
+        URI uri = parseDbUrl(remoteDbUrl);
+        if (uri != null && prefetcher != null) {
+            prefetcher.addReplication(getDbUrl(uri), replicationId, idPrefix);
+        }
+    }
+
+    /**
+     * Tell the prefetcher that a pull replication passed to {@link #startReplication(String, int, String)} is
+     * complete, paused or cancelled.
+     */
+    public void endReplication(String remoteDbUrl, int replicationId) {
+        URI uri = parseDbUrl(remoteDbUrl);
+        if (uri != null && prefetcher != null) {
+            prefetcher.removeReplication(getDbUrl(uri), replicationId);
+        }
+    }
+
+    private static URI parseDbUrl(String remoteDbUrl) {
+        URI uri;
+        try {
+            uri = new URI(remoteDbUrl);
+        } catch (URISyntaxException e) {
+            log.w(e, "can't tune replication for %s", remoteDbUrl);
+            return null;
+        }
+        if (uri.getHost() == null || !uri.getScheme().startsWith("http")) {
+            return null;
+        }
+        return uri;
+    }
+
+    /**
+     * Same as PouchDB's URL for the db, which has the credentials moved to a header.
+     */
+    private static String getDbUrl(URI uri) {
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return uri.getScheme() + "://" + uri.getHost() + (uri.getPort() == -1 ? "" : ":" + uri.getPort()) + path;
+    }
+
+    /**
+     * Execute the request on a pooled connection.  The caller must fully consume (or abort) the response
+     * entity, otherwise the connection is never returned to the pool.
+     *
+     * @param request
+     * @param timeout socket timeout in ms as given by the XHR, or 0 to use the configured default
+     */
+    public HttpResponse execute(HttpUriRequest request, int timeout) throws IOException {
+        if (timeout > 0) {
+            HttpConnectionParams.setSoTimeout(request.getParams(), timeout);
+        }
+        if (request instanceof HttpEntityEnclosingRequest) {
+            compressRequestBodyIfEnabled((HttpEntityEnclosingRequest)request, request.getURI().getHost());
+        }
+        connectionManager.closeIdleConnections(config.getKeepAliveDuration(), TimeUnit.MILLISECONDS);
+        metrics.onRequest();
+        return client.execute(request);
+    }
+    
+    private void compressRequestBodyIfEnabled(HttpEntityEnclosingRequest request, String host) throws IOException {
+        HttpEntity entity = request.getEntity();
+        if (entity == null) {
+            return;
+        }
+        long uncompressedLength = entity.getContentLength();
+        
+        if (!config.isGzipRequestHost(host) || uncompressedLength < config.getGzipRequestMinSize()
+                || request.containsHeader(HTTP.CONTENT_ENCODING)) {
+            metrics.onRequestBody(uncompressedLength, uncompressedLength);
+            return;
+        }
+        
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream((int)uncompressedLength / 4);
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed);
+        try {
+            entity.writeTo(gzipOutputStream);
+        } finally {
+            gzipOutputStream.close();
+        }
+        
+        request.setEntity(new ByteArrayEntity(compressed.toByteArray()));
+        request.setHeader(HTTP.CONTENT_ENCODING, "gzip");
+        metrics.onRequestBody(uncompressedLength, compressed.size());
+    }
+
+    /**
+     * Decompresses gzip/deflate responses, and counts the bytes before and after decompression.
+     */
+    private static class DecodingEntity extends HttpEntityWrapper {
+        
+        private final String encoding;
+        
+        public DecodingEntity(HttpEntity wrapped) {
+            super(wrapped);
+            Header contentEncoding = wrapped.getContentEncoding();
+            this.encoding = contentEncoding == null ? null : contentEncoding.getValue().trim().toLowerCase(Locale.US);
+        }
+        
+        private boolean isCompressed() {
+            return "gzip".equals(encoding) || "x-gzip".equals(encoding) || "deflate".equals(encoding);
+        }
+        
+        @Override
+        public InputStream getContent() throws IOException {
+            InputStream content = new CountingInputStream(wrappedEntity.getContent(), false);
+            if ("deflate".equals(encoding)) {
+                content = new InflaterInputStream(content);
+            } else if (isCompressed()) {
+                content = new GZIPInputStream(content);
+            }
+            return new CountingInputStream(content, true);
+        }
+        
+        @Override
+        public long getContentLength() {
+            return isCompressed() ? -1 : wrappedEntity.getContentLength(); // decoded length is unknown
+        }
+        
+        @Override
+        public Header getContentEncoding() {
+            return isCompressed() ? null : wrappedEntity.getContentEncoding();
+        }
+    }
+    
+    private static class CountingInputStream extends FilterInputStream {
+        
+        private final boolean decoded;
+        
+        public CountingInputStream(InputStream in, boolean decoded) {
+            super(in);
+            this.decoded = decoded;
+        }
+        
+        private int count(int numBytes) {
+            if (numBytes > 0) {
+                if (decoded) {
+                    metrics.onResponseBytesDecoded(numBytes);
+                } else {
+                    metrics.onResponseBytesOnWire(numBytes);
+                }
+            }
+            return numBytes;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result != -1) {
+                count(1);
+            }
+            return result;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return count(super.read(buffer, offset, length));
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count((int)skipped);
+            return skipped;
+        }
+    }
+    
+    /**
+     * Counts every connection that actually hits the network, so we can tell opened from reused.
+     */
+    private static class CountingConnectionOperator extends DefaultClientConnectionOperator {
+
+        public CountingConnectionOperator(SchemeRegistry schemes) {
+            super(schemes);
+        }
+
+        @Override
+        public void openConnection(OperatedClientConnection conn, HttpHost target, InetAddress local,
+                HttpContext context, HttpParams params) throws IOException {
+            metrics.onConnectionOpened();
+            log.d("opening new connection to %s", target);
+            super.openConnection(conn, target, local, context, params);
+        }
+    }
+}
@@ -1,19 +1,24 @@
 package com.pouchdb.pouchdroid.xhr;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.UnknownHostException;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpGet;
@@ -22,21 +27,20 @@ import org.apache.http.client.methods.HttpOptions;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.entity.ByteArrayEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.node.ObjectNode;
 import org.codehaus.jackson.type.TypeReference;
 
-import android.annotation.SuppressLint;
-import android.os.AsyncTask;
-import android.os.Build;
+import android.os.SystemClock;
 import android.text.TextUtils;
-import android.util.SparseArray;
 import android.webkit.JavascriptInterface;
 
 import com.pouchdb.pouchdroid.PouchDroid;
+import com.pouchdb.pouchdroid.util.Base64Compat;
 import com.pouchdb.pouchdroid.util.UtilLogger;
 
 /**
@@ -52,6 +56,14 @@ import com.pouchdb.pouchdroid.util.UtilLogger;
 public class XhrJavascriptInterface {
 
     private static UtilLogger log = new UtilLogger(XhrJavascriptInterface.class);
+    private static XhrMetrics metrics = XhrHttpClient.getMetrics();
+    private static Random random = new Random();
+
+    private static final int READ_BUFFER_SIZE = 0x2000;
+    private static final String DEFAULT_CHARSET = "UTF-8";
+    private static final int STREAM_CHUNK_SIZE = 0x8000; // push _changes to JS at most every 32KB, unless it stalls
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final long ORPHAN_TTL = 60000; // ms to keep an abort or binary response nobody has claimed
 
     private ObjectMapper objectMapper = new ObjectMapper();
     
@@ -61,28 +73,35 @@ public class XhrJavascriptInterface {
         this.pouchDroid = pouchDroid;
     }
 
-    private Set<Integer> aborted = new HashSet<Integer>();
-    private SparseArray<HttpUriRequest> requests = new SparseArray<HttpUriRequest>();
+    // touched by both the JS bridge thread and the xhr threads
+    private Map<Integer, HttpUriRequest> requests = new ConcurrentHashMap<Integer, HttpUriRequest>();
+    private Map<Integer, Long> aborted = new ConcurrentHashMap<Integer, Long>(); // xhrId -> time of abort
+    private Map<Integer, BinaryResponse> binaryResponses = new ConcurrentHashMap<Integer, BinaryResponse>();
     
     @JavascriptInterface
-    public void abort(String xhrJsonObj) {
-        log.d("abort(%s)", xhrJsonObj);
-        try{
-            
-            JsonNode xhrAsJsonNode = objectMapper.readTree(xhrJsonObj);
-            int xhrId = xhrAsJsonNode.get("id").asInt();
-            HttpUriRequest request = requests.get(xhrId);
-            if (request != null) {
-                request.abort();
-            } else { // try to abort later
-                aborted.add(xhrId); // TODO: possible memory leak
-            }
-        } catch (IOException e) {
-            // shouldn't happen
-            log.e(e, "unexpected");
+    public void abort(int xhrId) {
+        log.d("abort(%s)", xhrId);
+        HttpUriRequest request = requests.get(xhrId);
+        if (request != null) {
+            // shuts down the connection, so a blocked read fails right away instead of waiting for the
+            // server, and the connection doesn't count against the pool anymore
+            metrics.onAbort();
+            request.abort();
+        } else { // not sent yet; send() checks for this, and purgeExpired() cleans it up if it never comes
+            aborted.put(xhrId, SystemClock.elapsedRealtime());
         }
     }
     
+    /**
+     * Hand over the body of a finished binary response, base64-encoded.  Each response can only be read once.
+     */
+    @JavascriptInterface
+    public String readBinary(int xhrId) {
+        log.d("readBinary(%s)", xhrId);
+        BinaryResponse response = binaryResponses.remove(xhrId);
+        return response == null ? null : Base64Compat.encodeToString(response.bytes, Base64Compat.NO_WRAP);
+    }
+    
     @JavascriptInterface
     public void send(String xhrJsonObj) {
         log.d("send(%s)", xhrJsonObj);
@@ -111,7 +130,7 @@ public class XhrJavascriptInterface {
                 ObjectNode error = objectMapper.createObjectNode();
                 error.put("type", "error");
                 error.put("message", "Error connecting with XhrJavascriptInterface, most likely an HTTP timeout");
-                callback(xhrId, objectMapper.writeValueAsString(error), -1, null);
+                callback(xhrId, objectMapper.writeValueAsString(error), -1, null, null, false, false);
             }
         } catch (Exception e) {
             // shouldn't happen
@@ -119,12 +138,13 @@ public class XhrJavascriptInterface {
         }
     }
 
-    @SuppressLint("NewApi")
     private void send(JsonNode xhrAsJsonNode, final int xhrId, String body) throws IOException {
 
-        if (aborted.contains(xhrId)) {
+        purgeExpired();
+        
+        if (aborted.containsKey(xhrId)) {
             log.i("aborted %d", xhrId);
-            callback(xhrId, "aborted", 0, null);
+            callback(xhrId, "aborted", 0, null, null, false, false);
             return;
         }
         
@@ -132,24 +152,24 @@ public class XhrJavascriptInterface {
                 xhrAsJsonNode.get("requestHeaders"), new TypeReference<HashMap<String,String>>(){});
 
         String method = xhrAsJsonNode.get("method").asText();
-        String url = xhrAsJsonNode.get("url").asText();
+        final String url = xhrAsJsonNode.get("url").asText();
         log.d("xhrId: %s, method: %s, url: %s, body: %s", xhrId, method, url, body);
         
         JsonNode timeoutValue = xhrAsJsonNode.get("timeout");
         int timeout = timeoutValue != null ? (int)timeoutValue.asLong(0) : 0;
         
         JsonNode binaryValue = xhrAsJsonNode.get("binary");
-        boolean binary = binaryValue != null && binaryValue.asBoolean();
+        JsonNode responseTypeValue = xhrAsJsonNode.get("responseType");
+        String responseType = responseTypeValue != null ? responseTypeValue.asText() : null;
+        final boolean binary = (binaryValue != null && binaryValue.asBoolean()) 
+                || "arraybuffer".equals(responseType) || "blob".equals(responseType);
+        final boolean streamed = !binary && isChangesFeed(url);
         
-        if (binary) {
-            // TODO: implement binary
-            throw new IllegalArgumentException("Client asked for binary, but we haven't implemented binary yet!");
-        }
-        
-        final HttpClient client = new DefaultHttpClient();
-        client.getParams().setParameter("http.socket.timeout", timeout);
+        final int socketTimeout = timeout;
+        final int maxResponseSize = XhrHttpClient.getInstance().getConfig().getMaxResponseSize();
         final HttpUriRequest request = createRequest(method, url);
         requests.put(xhrId, request);
+        metrics.onRequestInFlight();
         
         for (Entry<String, String> entry : requestHeaders.entrySet()) {
             request.setHeader(entry.getKey(), entry.getValue());
@@ -159,66 +179,204 @@ public class XhrJavascriptInterface {
             ((HttpEntityEnclosingRequestBase)request).setEntity(new ByteArrayEntity(
                     body.toString().getBytes("UTF8")));
         }
+        final boolean cacheable = !streamed && isCacheable(request);
+        final boolean idempotent = isIdempotent(request, body);
         
-        AsyncTask<Void, Void, SimpleHttpResponse> task = new AsyncTask<Void, Void, SimpleHttpResponse>() {
-
+        Runnable task = new Runnable() {
+            
+            private final AtomicBoolean streamStarted = new AtomicBoolean(); // once chunks have reached JS
+            private int attempt;
+            private XhrCircuitBreaker circuitBreaker; // the one that let the request through
+            
+            /**
+             * Make one attempt at the request, and either deliver the response or, if it failed in a way that's
+             * safe to retry, queue the next attempt to run after a backoff.  The request doesn't hold a thread, or
+             * a slot for its host, while it waits.  The circuit breaker hears about the request once, when it's
+             * done: its retries are part of the same request.
+             */
             @Override
-            protected SimpleHttpResponse doInBackground(Void... params) {
+            public void run() {
+                XhrHttpClient client = XhrHttpClient.getInstance();
+                String host = request.getURI().getHost();
+                
+                if (attempt == 0) {
+                    circuitBreaker = client.getCircuitBreaker();
+                    if (!circuitBreaker.allowRequest(host)) {
+                        log.w("xhrid %s not sent, %s has been failing", xhrId, host);
+                        deliverResponse(null);
+                        return;
+                    }
+                }
+                if (request.isAborted()) {
+                    // aborted while it was queued or backing off; don't bother the server
+                    circuitBreaker.onCancelled(host);
+                    deliverResponse(null);
+                    return;
+                }
+                
+                SimpleHttpResponse response = null;
+                boolean retryable;
                 try {
+                    response = executeOnce();
+                    if (!isServerUnavailable(response.statusCode)) {
+                        circuitBreaker.onSuccess(host);
+                        deliverResponse(response);
+                        return;
+                    }
+                    retryable = idempotent && !streamStarted.get();
+                } catch (Exception e) {
+                    if (request.isAborted()) {
+                        log.i("xhrid %s aborted mid-request", xhrId);
+                        circuitBreaker.onCancelled(host);
+                        deliverResponse(null);
+                        return;
+                    }
+                    retryable = isConnectFailure(e) 
+                            || (idempotent && !streamStarted.get() && e instanceof IOException);
+                    if (!retryable || attempt >= client.getConfig().getMaxRetries()) {
+                        log.e(e, "HTTP exception during request");
+                    } else {
+                        log.w("xhrid %s failed with %s, retrying", xhrId, e);
+                    }
+                }
+                if (!retryable || attempt >= client.getConfig().getMaxRetries()) {
+                    circuitBreaker.onFailure(host);
+                    deliverResponse(response); // let PouchDB see the 503, if that's what it was
+                    return;
+                }
+                
+                metrics.onRetry();
+                long delay = getRetryDelay(client.getConfig(), attempt);
+                attempt++;
+                client.getExecutor().executeLater(host, getPriority(url), this, delay);
+            }
+            
+            private SimpleHttpResponse executeOnce() throws IOException {
+                HttpEntity entity = null;
+                try {
+                    XhrBulkGetPrefetcher prefetcher = XhrHttpClient.getInstance().getPrefetcher();
+                    String prefetchedDoc = prefetcher == null ? null : prefetcher.get(request, socketTimeout);
+                    if (prefetchedDoc != null) {
+                        log.d("xhrid %s served from _bulk_get.", xhrId);
+                        Map<String, String> headers = new HashMap<String, String>();
+                        headers.put("content-type", "application/json");
+                        return createResponse(prefetchedDoc.getBytes(DEFAULT_CHARSET), DEFAULT_CHARSET,
+                                HttpStatus.SC_OK, headers);
+                    }
+                    
+                    XhrCache cache = cacheable ? XhrHttpClient.getInstance().getCache() : null;
+                    String cacheKey = null;
+                    XhrCache.Entry cached = null;
+                    if (cache != null) {
+                        cacheKey = XhrCache.getKey(request);
+                        cached = cache.get(cacheKey);
+                        if (cached != null) {
+                            request.setHeader(HEADER_IF_NONE_MATCH, cached.etag);
+                        }
+                    }
+                    
                     log.d("xhrid %s executing request...", xhrId);
-                    HttpResponse response = client.execute(request);
+                    HttpResponse response = XhrHttpClient.getInstance().execute(request, socketTimeout);
                     log.d("xhrid %s got response.", xhrId);
-                    HttpEntity entity = response.getEntity();
-                    String content = readInput(entity.getContent());
+                    entity = response.getEntity();
+                    int statusCode = response.getStatusLine().getStatusCode();
+                    
+                    if (cached != null && statusCode == HttpStatus.SC_NOT_MODIFIED) {
+                        // we asked, not PouchDB, so PouchDB gets the 200 it would have gotten without the cache
+                        log.d("xhrid %s served from cache.", xhrId);
+                        metrics.onCacheHit(cached.body.length);
+                        return createResponse(cached.body, getCharset(cached.headers.get("content-type")),
+                                HttpStatus.SC_OK, cached.headers);
+                    }
+                    
+                    Map<String, String> headers = getResponseHeaders(response);
+                    
+                    if (entity == null) {
+                        return new SimpleHttpResponse(null, null, statusCode, headers, false);
+                    }
+                    
+                    if (streamed && statusCode >= 200 && statusCode < 300) {
+                        // JS accumulates the body from the progress events, so we don't have to hold it here.  An
+                        // error is read whole like any other response, so that e.g. a 503 can still be retried.
+                        streamInput(xhrId, entity, maxResponseSize, 
+                                statusCode == HttpStatus.SC_OK ? url : null, streamStarted);
+                        log.d("xhrid %s streamed content.", xhrId);
+                        return new SimpleHttpResponse(null, null, statusCode, headers, true);
+                    }
+                    
+                    byte[] content = readInput(entity, maxResponseSize).toByteArray();
                     log.d("xhrid %s read content.", xhrId);
-                    return new SimpleHttpResponse(content, response.getStatusLine().getStatusCode());
-                } catch (Exception e) {
-                    log.e(e, "HTTP exception during request");
-                    return null;
+                    
+                    if (cache != null) {
+                        metrics.onCacheMiss();
+                        String etag = headers.get("etag");
+                        String cacheControl = headers.get("cache-control");
+                        if (statusCode == HttpStatus.SC_OK && etag != null 
+                                && (cacheControl == null || !cacheControl.contains("no-store"))) {
+                            cache.put(cacheKey, new XhrCache.Entry(etag, headers, content));
+                        } else if (cached != null) {
+                            cache.remove(cacheKey);
+                        }
+                    }
+                    
+                    return createResponse(content, getCharset(entity), statusCode, headers);
+                } finally {
+                    if (!request.isAborted()) {
+                        // release the connection back to the pool
+                        consumeQuietly(entity);
+                    }
                 }
             }
 
-            @Override
-            protected void onPostExecute(SimpleHttpResponse response) {
-                super.onPostExecute(response);
-                
+            private SimpleHttpResponse createResponse(byte[] content, String charset, int statusCode,
+                    Map<String, String> headers) throws IOException {
+                if (binary && statusCode >= 200 && statusCode < 300) {
+                    // errors are still JSON, which PouchDB reads from responseText
+                    return new SimpleHttpResponse(null, content, statusCode, headers, false);
+                }
+                return new SimpleHttpResponse(new String(content, charset), null, statusCode, headers, false);
+            }
+
+            private void deliverResponse(SimpleHttpResponse response) {
                 try {
+                    if (request.isAborted() || aborted.containsKey(xhrId)) {
+                        log.i("aborted %d", xhrId);
+                        callback(xhrId, "aborted", 0, null, null, false, false);
+                        return;
+                    }
+                    
                     if (response == null) {
                         log.e("http response is null.  Did you remember to add " +
                         		"<uses-permission android:name=\"android.permission.INTERNET\"/> " +
                         		"to your AndroidManifest.xml?  Is the target URL available?");
-                        callback(xhrId, "aborted or URL not accessible", 0, null);
+                        callback(xhrId, "aborted or URL not accessible", 0, null, null, false, false);
                         return;
                     }
                     
-                    if (aborted.contains(xhrId)) {
-                        log.i("aborted %d", xhrId);
-                        callback(xhrId, "aborted", 0, null);
-                        return;
+                    if (response.binaryBody != null) {
+                        binaryResponses.put(xhrId, new BinaryResponse(response.binaryBody));
                     }
-                    callback(xhrId, null, response.statusCode, response.body);
+                    callback(xhrId, null, response.statusCode, response.body, response.headers, 
+                            response.binaryBody != null, response.streamed);
                     
                 } catch (Exception e) {
-                    log.e(e, "exception within onPostExecute"); // shouldn't happen
+                    log.e(e, "exception while delivering response"); // shouldn't happen
                 }
             }
             
         };
-        if (Build.VERSION.SDK_INT >= 11) {
-            // take advantage of multiple executors
-            task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, (Void)null);
-        } else {
-            // just use the default
-            task.execute((Void)null);
-        }   
+        XhrHttpClient.getInstance().getExecutor().execute(request.getURI().getHost(), getPriority(url), task);
     }
 
-    private void callback(int xhrId, String error, int statusCode, String content) throws IOException {
+    private void callback(int xhrId, String error, int statusCode, String content, Map<String, String> headers,
+            boolean binary, boolean streamed) throws IOException {
         log.d("callback()");
         
         // cleanup
         aborted.remove(xhrId);
-        requests.remove(xhrId);
+        if (requests.remove(xhrId) != null) {
+            metrics.onRequestDone();
+        }
         
         final String js  = new StringBuilder()
             .append("PouchDroid.NativeXMLHttpRequests[")
@@ -229,23 +387,276 @@ public class XhrJavascriptInterface {
             .append(statusCode)
             .append(",")
             .append(TextUtils.isEmpty(content) ? "\"null\"" : objectMapper.writeValueAsString(content))
+            .append(",")
+            .append(headers == null ? "{}" : objectMapper.writeValueAsString(headers))
+            .append(",")
+            .append(binary)
+            .append(",")
+            .append(streamed)
             .append(");").toString();
         
         pouchDroid.loadJavascript(js);
         
     }
+    
+    private void progress(int xhrId, String chunk, long loaded, long total) throws IOException {
+        
+        final String js  = new StringBuilder()
+            .append("PouchDroid.NativeXMLHttpRequests[")
+            .append(xhrId)
+            .append("].onNativeProgress(false,")
+            .append(objectMapper.writeValueAsString(chunk))
+            .append(",")
+            .append(loaded)
+            .append(",")
+            .append(total)
+            .append(");").toString();
+        
+        // posted to the same queue as the final callback, so the chunks arrive in order and before it
+        pouchDroid.loadJavascript(js);
+    }
 
-    private static String readInput(InputStream in) throws IOException {
+    /**
+     * Forget aborts for XHRs that were never sent, and binary responses that JS never read (e.g. because its
+     * callback threw).  Both are keyed by xhr id, so without this they would pile up for the life of the WebView.
+     */
+    private void purgeExpired() {
+        long expiredBefore = SystemClock.elapsedRealtime() - ORPHAN_TTL;
+        for (Iterator<Long> iterator = aborted.values().iterator(); iterator.hasNext();) {
+            if (iterator.next() < expiredBefore) {
+                iterator.remove();
+                metrics.onOrphanExpired();
+            }
+        }
+        for (Iterator<BinaryResponse> iterator = binaryResponses.values().iterator(); iterator.hasNext();) {
+            if (iterator.next().createdAt < expiredBefore) {
+                iterator.remove();
+                metrics.onOrphanExpired();
+            }
+        }
+    }
+    
+    private static void consumeQuietly(HttpEntity entity) {
+        if (entity == null) {
+            return;
+        }
+        try {
+            entity.consumeContent();
+        } catch (IOException e) {
+            log.w(e, "couldn't consume entity; connection will not be re-used");
+        }
+    }
+
+    /**
+     * Read the response body byte-for-byte.
+     */
+    private static ByteArrayOutputStream readInput(HttpEntity entity, int maxSize) throws IOException {
+        
+        long contentLength = entity.getContentLength();
+        if (contentLength > maxSize) {
+            throw new IOException("response of " + contentLength + " bytes exceeds max size of " + maxSize);
+        }
         
-        StringBuilder sb = new StringBuilder();
-        BufferedReader buff = new BufferedReader(new InputStreamReader(in), 0x1000);
-        String line = "";
-        while ((line = buff.readLine()) != null) {
-            log.d("line: %s", line);
-            sb.append(line).append("\n");
+        ByteArrayOutputStream output = new ByteArrayOutputStream(
+                contentLength > 0 ? (int)contentLength : READ_BUFFER_SIZE);
+        InputStream in = entity.getContent();
+        try {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (output.size() + read > maxSize) {
+                    throw new IOException("response exceeds max size of " + maxSize);
+                }
+                output.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        log.d("read %d bytes of response", output.size());
+        return output;
+    }
+    
+    /**
+     * Read the response body and push it to JS as it arrives, in chunks that always end on a line break.  CouchDB
+     * writes one change per line, and a line break never falls inside a multi-byte UTF-8 character, so each chunk
+     * decodes cleanly on its own.  Complete lines are flushed once we've buffered {@link #STREAM_CHUNK_SIZE} bytes,
+     * or as soon as the server stops sending for a moment, so a long-poll that trickles in isn't held back.
+     * 
+     * @param changesUrl url of the successful _changes request, so the {@link XhrBulkGetPrefetcher} gets to see
+     *        the changes too; or null
+     * @param chunkSent set once the first chunk has been pushed to JS, after which the request can't be retried
+     * @return the number of bytes read
+     */
+    private long streamInput(int xhrId, HttpEntity entity, int maxSize, String changesUrl, AtomicBoolean chunkSent)
+            throws IOException {
+        
+        long contentLength = entity.getContentLength();
+        if (contentLength > maxSize) {
+            throw new IOException("response of " + contentLength + " bytes exceeds max size of " + maxSize);
+        }
+        
+        String charset = getCharset(entity);
+        ByteArrayOutputStream pending = new ByteArrayOutputStream(STREAM_CHUNK_SIZE);
+        long loaded = 0;
+        int chunks = 0;
+        InputStream in = entity.getContent();
+        try {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                loaded += read;
+                if (loaded > maxSize) {
+                    throw new IOException("response exceeds max size of " + maxSize);
+                }
+                pending.write(buffer, 0, read);
+                if (pending.size() >= STREAM_CHUNK_SIZE || in.available() == 0) {
+                    if (flushLines(xhrId, pending, charset, loaded, contentLength, changesUrl)) {
+                        chunkSent.set(true);
+                        chunks++;
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+        if (pending.size() > 0) {
+            chunkSent.set(true);
+            onChunk(xhrId, pending.toString(charset), loaded, contentLength, changesUrl);
+            chunks++;
+        }
+        log.d("streamed %d bytes of response in %d chunks", loaded, chunks);
+        return loaded;
+    }
+    
+    /**
+     * Push everything up to and including the last line break to JS, and keep the rest buffered.
+     */
+    private boolean flushLines(int xhrId, ByteArrayOutputStream pending, String charset, long loaded, long total,
+            String changesUrl) throws IOException {
+        byte[] bytes = pending.toByteArray();
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+        if (end == 0) {
+            return false; // no complete line yet
         }
-        log.d("response: %s", sb);
-        return sb.toString();
+        // the bytes after the line break haven't been handed over yet, so don't count them as loaded
+        onChunk(xhrId, new String(bytes, 0, end, charset), loaded - (bytes.length - end), total, changesUrl);
+        pending.reset();
+        pending.write(bytes, end, bytes.length - end);
+        return true;
+    }
+    
+    private void onChunk(int xhrId, String chunk, long loaded, long total, String changesUrl) throws IOException {
+        XhrBulkGetPrefetcher prefetcher = XhrHttpClient.getInstance().getPrefetcher();
+        if (prefetcher != null && changesUrl != null) {
+            prefetcher.onChanges(changesUrl, chunk);
+        }
+        progress(xhrId, chunk, loaded, total);
+    }
+    
+    /**
+     * Only plain GETs go through the {@link XhrCache}.  If PouchDB sent its own If-None-Match, it wants to see
+     * the 304 itself.
+     */
+    private static boolean isCacheable(HttpUriRequest request) {
+        return request instanceof HttpGet && !request.containsHeader(HEADER_IF_NONE_MATCH);
+    }
+    
+    /**
+     * Whether it's safe to send the request again, even though the server may have already acted on it.  Plain
+     * PUTs and DELETEs aren't, because the second try would get a 409 from CouchDB if the first one went through.
+     */
+    private static boolean isIdempotent(HttpUriRequest request, String body) {
+        String method = request.getMethod();
+        if (method.equals("GET") || method.equals("HEAD") || method.equals("OPTIONS")) {
+            return true;
+        }
+        if (!method.equals("POST")) {
+            return false;
+        }
+        String path = request.getURI().getPath();
+        if (path == null) {
+            return false;
+        }
+        // read-only POSTs, and replicated writes (which CouchDB ignores if it already has the revision)
+        return path.endsWith("/_revs_diff") || path.endsWith("/_all_docs") || path.endsWith("/_changes")
+                || path.endsWith("/_bulk_get") || (path.endsWith("/_bulk_docs") && body != null
+                        && body.replace(" ", "").contains("\"new_edits\":false"));
+    }
+    
+    /**
+     * Whether the request failed before it reached the server, in which case it's always safe to retry.
+     */
+    private static boolean isConnectFailure(Exception e) {
+        return e instanceof ConnectException || e instanceof ConnectTimeoutException
+                || e instanceof UnknownHostException;
+    }
+    
+    private static boolean isServerUnavailable(int statusCode) {
+        return statusCode == HttpStatus.SC_BAD_GATEWAY || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE
+                || statusCode == HttpStatus.SC_GATEWAY_TIMEOUT;
+    }
+    
+    /**
+     * Exponential backoff with full jitter: a random wait between 0 and base * 2^attempt, capped at the max.
+     */
+    private static long getRetryDelay(XhrConfig config, int attempt) {
+        long ceiling = Math.min(config.getRetryMaxDelay(), config.getRetryBaseDelay() << Math.min(attempt, 20));
+        return (long)(random.nextDouble() * ceiling);
+    }
+    
+    /**
+     * Guess from the URL whether PouchDB is replicating, or whether somebody is waiting on this request.
+     */
+    private static XhrExecutor.Priority getPriority(String url) {
+        if (url.contains("/_changes") || url.contains("/_revs_diff") || url.contains("/_bulk_docs")
+                || url.contains("/_local/") || url.contains("/_all_docs") || url.contains("open_revs=")) {
+            return XhrExecutor.Priority.REPLICATION;
+        }
+        return XhrExecutor.Priority.INTERACTIVE;
+    }
+    
+    private static boolean isChangesFeed(String url) {
+        try {
+            String path = URI.create(url).getPath();
+            return path != null && path.endsWith("/_changes");
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Charset from the Content-Type header.
+     */
+    private static String getCharset(HttpEntity entity) {
+        String charset = EntityUtils.getContentCharSet(entity);
+        return charset != null ? charset : DEFAULT_CHARSET; // CouchDB speaks JSON, which is UTF-8 by default
+    }
+    
+    /**
+     * Charset from a Content-Type header value, e.g. for a response that was served from the cache.
+     */
+    private static String getCharset(String contentType) {
+        if (contentType != null) {
+            for (String param : contentType.split(";")) {
+                param = param.trim();
+                if (param.toLowerCase(Locale.US).startsWith("charset=")) {
+                    return param.substring("charset=".length()).replace("\"", "").trim();
+                }
+            }
+        }
+        return DEFAULT_CHARSET;
+    }
+    
+    private static Map<String, String> getResponseHeaders(HttpResponse response) {
+        // XHR header names are case-insensitive, so normalize them for the JS side
+        Map<String, String> headers = new HashMap<String, String>();
+        for (Header header : response.getAllHeaders()) {
+            headers.put(header.getName().toLowerCase(Locale.US), header.getValue());
+        }
+        return headers;
     }
 
     private static HttpUriRequest createRequest(String method, String url) {
@@ -276,13 +687,29 @@ public class XhrJavascriptInterface {
         throw new IllegalArgumentException("we don't understand the http method: " + method);
     }
     
+    private static class BinaryResponse {
+        final byte[] bytes;
+        final long createdAt = SystemClock.elapsedRealtime();
+        
+        BinaryResponse(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+    
     private static class SimpleHttpResponse {
         String body;
+        byte[] binaryBody;
         int statusCode;
+        Map<String, String> headers;
+        boolean streamed;
         
-        SimpleHttpResponse(String body, int statusCode) {
+        SimpleHttpResponse(String body, byte[] binaryBody, int statusCode, Map<String, String> headers,
+                boolean streamed) {
             this.body = body;
+            this.binaryBody = binaryBody;
             this.statusCode = statusCode;
+            this.headers = headers;
+            this.streamed = streamed;
         }
         
         
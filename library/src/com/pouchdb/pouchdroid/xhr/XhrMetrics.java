@@ -0,0 +1,356 @@
+package com.pouchdb.pouchdroid.xhr;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the native HTTP layer.  All values are cumulative since the process started (or since
+ * {@link #reset()}), and are safe to read from any thread.
+ */
+public class XhrMetrics {
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong requestBytesUncompressed = new AtomicLong();
+    private final AtomicLong requestBytesOnWire = new AtomicLong();
+    private final AtomicLong responseBytesOnWire = new AtomicLong();
+    private final AtomicLong responseBytesDecoded = new AtomicLong();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong tasksStarted = new AtomicLong();
+    private final AtomicLong tasksFinished = new AtomicLong();
+    private final AtomicLong totalQueueWaitMillis = new AtomicLong();
+    private final AtomicLong maxQueueWaitMillis = new AtomicLong();
+    private final AtomicLong totalExecutionMillis = new AtomicLong();
+    private final AtomicInteger requestsInFlight = new AtomicInteger();
+    private final AtomicLong aborts = new AtomicLong();
+    private final AtomicLong orphansExpired = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong cacheBytesSaved = new AtomicLong();
+    private final AtomicLong bulkGets = new AtomicLong();
+    private final AtomicLong docsPrefetched = new AtomicLong();
+    private final AtomicLong prefetchHits = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong circuitBreakerTrips = new AtomicLong();
+    private final AtomicLong circuitBreakerRejections = new AtomicLong();
+
+    /* package */ void onRequest() {
+        requests.incrementAndGet();
+    }
+
+    /* package */ void onConnectionOpened() {
+        connectionsOpened.incrementAndGet();
+    }
+
+    /* package */ void onRequestBody(long uncompressed, long onWire) {
+        requestBytesUncompressed.addAndGet(uncompressed);
+        requestBytesOnWire.addAndGet(onWire);
+    }
+
+    /* package */ void onResponseBytesOnWire(long numBytes) {
+        responseBytesOnWire.addAndGet(numBytes);
+    }
+
+    /* package */ void onResponseBytesDecoded(long numBytes) {
+        responseBytesDecoded.addAndGet(numBytes);
+    }
+
+    /* package */ void onTaskQueued() {
+        int depth = queueDepth.incrementAndGet();
+        int max;
+        while (depth > (max = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(max, depth)) {
+            // retry
+        }
+    }
+
+    /* package */ void onTaskHandedOver() {
+        queueDepth.decrementAndGet(); // the executor it's handed to counts it again
+    }
+
+    /* package */ void onTaskStarted(long queueWaitMillis) {
+        queueDepth.decrementAndGet();
+        tasksStarted.incrementAndGet();
+        totalQueueWaitMillis.addAndGet(queueWaitMillis);
+        long max;
+        while (queueWaitMillis > (max = maxQueueWaitMillis.get())
+                && !maxQueueWaitMillis.compareAndSet(max, queueWaitMillis)) {
+            // retry
+        }
+    }
+
+    /* package */ void onTaskFinished(long executionMillis) {
+        tasksFinished.incrementAndGet();
+        totalExecutionMillis.addAndGet(executionMillis);
+    }
+
+    /* package */ void onRequestInFlight() {
+        requestsInFlight.incrementAndGet();
+    }
+
+    /* package */ void onRequestDone() {
+        requestsInFlight.decrementAndGet();
+    }
+
+    /* package */ void onAbort() {
+        aborts.incrementAndGet();
+    }
+
+    /* package */ void onOrphanExpired() {
+        orphansExpired.incrementAndGet();
+    }
+
+    /* package */ void onCacheHit(long bytesSaved) {
+        cacheHits.incrementAndGet();
+        cacheBytesSaved.addAndGet(bytesSaved);
+    }
+
+    /* package */ void onCacheMiss() {
+        cacheMisses.incrementAndGet();
+    }
+
+    /* package */ void onBulkGet(int numDocs) {
+        bulkGets.incrementAndGet();
+        docsPrefetched.addAndGet(numDocs);
+    }
+
+    /* package */ void onPrefetchHit() {
+        prefetchHits.incrementAndGet();
+    }
+
+    /* package */ void onRetry() {
+        retries.incrementAndGet();
+    }
+
+    /* package */ void onCircuitBreakerTrip() {
+        circuitBreakerTrips.incrementAndGet();
+    }
+
+    /* package */ void onCircuitBreakerRejection() {
+        circuitBreakerRejections.incrementAndGet();
+    }
+
+    /**
+     * Number of HTTP requests that were sent over the wire.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Number of new TCP (and possibly TLS) connections that had to be established.
+     */
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    /**
+     * Number of requests that were sent over an already-open, kept-alive connection.
+     */
+    public long getConnectionsReused() {
+        return Math.max(0, requests.get() - connectionsOpened.get());
+    }
+
+    /**
+     * Request body bytes before compression.
+     */
+    public long getRequestBytesUncompressed() {
+        return requestBytesUncompressed.get();
+    }
+
+    /**
+     * Request body bytes actually sent, i.e. after gzipping if it was enabled for the host.
+     */
+    public long getRequestBytesOnWire() {
+        return requestBytesOnWire.get();
+    }
+
+    /**
+     * Response body bytes actually received, i.e. still gzipped/deflated if the server compressed them.
+     */
+    public long getResponseBytesOnWire() {
+        return responseBytesOnWire.get();
+    }
+
+    /**
+     * Response body bytes after decompression, i.e. what was handed to PouchDB.
+     */
+    public long getResponseBytesDecoded() {
+        return responseBytesDecoded.get();
+    }
+
+    /**
+     * Number of XHRs currently waiting for a thread, or for a free slot for their host.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Highest {@link #getQueueDepth()} seen.
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * Average time an XHR waited in the queue before it started, in ms.
+     */
+    public long getAverageQueueWaitMillis() {
+        long started = tasksStarted.get();
+        return started == 0 ? 0 : totalQueueWaitMillis.get() / started;
+    }
+
+    public long getMaxQueueWaitMillis() {
+        return maxQueueWaitMillis.get();
+    }
+
+    /**
+     * Average time from an XHR starting until its response was fully read and handed to JS, in ms.
+     */
+    public long getAverageExecutionMillis() {
+        long finished = tasksFinished.get();
+        return finished == 0 ? 0 : totalExecutionMillis.get() / finished;
+    }
+
+    /**
+     * Number of XHRs that have been sent from JS and haven't called back yet, whether queued or running.
+     */
+    public int getRequestsInFlight() {
+        return requestsInFlight.get();
+    }
+
+    /**
+     * Number of in-flight XHRs that were aborted, e.g. because a replication was cancelled.
+     */
+    public long getAborts() {
+        return aborts.get();
+    }
+
+    /**
+     * Number of aborts and binary responses that were cleaned up because nobody claimed them in time.
+     */
+    public long getOrphansExpired() {
+        return orphansExpired.get();
+    }
+
+    /**
+     * Number of cacheable GETs that were answered with a 304, and served from the {@link XhrCache}.
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Number of cacheable GETs that had to be downloaded, either because they weren't cached or because they
+     * had changed.
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * Fraction of cacheable GETs that were served from the cache, from 0 to 1.
+     */
+    public double getCacheHitRatio() {
+        long hits = cacheHits.get();
+        long total = hits + cacheMisses.get();
+        return total == 0 ? 0 : (double)hits / total;
+    }
+
+    /**
+     * Response body bytes that didn't have to be downloaded thanks to the cache.
+     */
+    public long getCacheBytesSaved() {
+        return cacheBytesSaved.get();
+    }
+
+    /**
+     * Number of <code>_bulk_get</code> requests sent in place of single-doc GETs.
+     */
+    public long getBulkGets() {
+        return bulkGets.get();
+    }
+
+    /**
+     * Number of docs fetched by those <code>_bulk_get</code>s.
+     */
+    public long getDocsPrefetched() {
+        return docsPrefetched.get();
+    }
+
+    /**
+     * Number of doc GETs that were answered with a prefetched doc, i.e. round trips saved.
+     */
+    public long getPrefetchHits() {
+        return prefetchHits.get();
+    }
+
+    /**
+     * Number of times a failed request was tried again.
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Number of times a host's circuit breaker opened.
+     */
+    public long getCircuitBreakerTrips() {
+        return circuitBreakerTrips.get();
+    }
+
+    /**
+     * Number of requests that failed fast because their host's circuit breaker was open.
+     */
+    public long getCircuitBreakerRejections() {
+        return circuitBreakerRejections.get();
+    }
+
+    /**
+     * Reset the counters.  {@link #getQueueDepth()} and {@link #getRequestsInFlight()} are gauges of what's going
+     * on right now, so they're left alone.
+     */
+    public void reset() {
+        requests.set(0);
+        connectionsOpened.set(0);
+        requestBytesUncompressed.set(0);
+        requestBytesOnWire.set(0);
+        responseBytesOnWire.set(0);
+        responseBytesDecoded.set(0);
+        maxQueueDepth.set(queueDepth.get());
+        tasksStarted.set(0);
+        tasksFinished.set(0);
+        totalQueueWaitMillis.set(0);
+        maxQueueWaitMillis.set(0);
+        totalExecutionMillis.set(0);
+        aborts.set(0);
+        orphansExpired.set(0);
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        cacheBytesSaved.set(0);
+        bulkGets.set(0);
+        docsPrefetched.set(0);
+        prefetchHits.set(0);
+        retries.set(0);
+        circuitBreakerTrips.set(0);
+        circuitBreakerRejections.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "XhrMetrics [requests=" + getRequests() + ", connectionsOpened=" + getConnectionsOpened()
+                + ", connectionsReused=" + getConnectionsReused() + ", requestBytesUncompressed="
+                + getRequestBytesUncompressed() + ", requestBytesOnWire=" + getRequestBytesOnWire()
+                + ", responseBytesOnWire=" + getResponseBytesOnWire() + ", responseBytesDecoded="
+                + getResponseBytesDecoded() + ", queueDepth=" + getQueueDepth() + ", maxQueueDepth="
+                + getMaxQueueDepth() + ", averageQueueWaitMillis=" + getAverageQueueWaitMillis()
+                + ", maxQueueWaitMillis=" + getMaxQueueWaitMillis() + ", averageExecutionMillis="
+                + getAverageExecutionMillis() + ", requestsInFlight=" + getRequestsInFlight() + ", aborts="
+                + getAborts() + ", orphansExpired=" + getOrphansExpired() + ", cacheHits="
+                + getCacheHits() + ", cacheMisses=" + getCacheMisses() + ", cacheBytesSaved=" + getCacheBytesSaved()
+                + ", bulkGets=" + getBulkGets() + ", docsPrefetched=" + getDocsPrefetched() + ", prefetchHits="
+                + getPrefetchHits() + ", retries=" + getRetries() + ", circuitBreakerTrips="
+                + getCircuitBreakerTrips() + ", circuitBreakerRejections=" + getCircuitBreakerRejections() + "]";
+    }
+}
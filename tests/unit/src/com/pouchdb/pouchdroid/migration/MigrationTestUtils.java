@@ -0,0 +1,39 @@
+package com.pouchdb.pouchdroid.migration;
+
+import java.util.List;
+
+import android.content.Context;
+
+import com.pouchdb.pouchdroid.migration.MigrationCheckpointStore.Checkpoint;
+import com.pouchdb.pouchdroid.pouch.model.PouchInfo;
+
+/**
+ * Reaches into the migration's package-private classes for the tests in com.pouchdb.pouchdroid.test, to set up the
+ * state an earlier migration would have left behind, or to drive the direct loader on its own.
+ */
+public class MigrationTestUtils {
+
+    /**
+     * Save a checkpoint for the table whose doc ids start with <code>docIdPrefix</code>, as if a migration into the
+     * PouchDB had died after reading <code>numRowsRead</code> rows, up to <code>lastKey</code> (whose values are of
+     * the <code>typeof()</code> types in <code>lastKeyTypes</code>).
+     */
+    public static void saveCheckpoint(Context context, String pouchDBName, String docIdPrefix,
+            List<String> keyColumns, List<String> lastKey, List<String> lastKeyTypes, int numRowsRead) {
+        MigrationCheckpointStore checkpointStore = new MigrationCheckpointStore(context, pouchDBName);
+        try {
+            checkpointStore.save(docIdPrefix, new Checkpoint(keyColumns, lastKey, lastKeyTypes, numRowsRead, 0));
+        } finally {
+            checkpointStore.close();
+        }
+    }
+
+    /**
+     * Write the docs straight into the PouchDB's tables, as a migration with
+     * {@link PouchDroidMigrationTask.Builder#setDirectLoad(boolean)} does.
+     */
+    public static List<PouchInfo> directLoad(Context context, String pouchDBName,
+            List<GenericSqliteDocument> documents) {
+        return new MigrationDirectLoader(context, pouchDBName).bulkDocs(documents);
+    }
+}
@@ -0,0 +1,216 @@
+package com.pouchdb.pouchdroid.test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+
+import com.pouchdb.pouchdroid.appforunittests.MainActivity;
+import com.pouchdb.pouchdroid.migration.GenericSqliteDocument;
+import com.pouchdb.pouchdroid.migration.MigrationProgressListener;
+import com.pouchdb.pouchdroid.migration.PouchDroidMigrationTask;
+import com.pouchdb.pouchdroid.pouch.PouchDB;
+
+/**
+ * Migrates a synthetic 100k-row table, and compares paging through it by offset and by key.  Check logcat for the
+ * "Benchmark" tag.  The migration's peak heap use is logged too, since it has to fit in a 32 MB heap, and so is the
+ * time it takes to migrate the same rows split over several tables, one table at a time and all at once, and through
+ * PouchDB and straight into its tables.
+ */
+public class MigrationBenchmarkTest extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    private static final String TAG = "Benchmark";
+
+    private static final int NUM_ROWS = 100000;
+    private static final int PAGE_SIZE = 25;
+    private static final int NUM_TABLES = 4;
+
+    private String sqliteDbName;
+    private SQLiteDatabase sqliteDatabase;
+    private volatile long peakHeapBytes;
+
+    @SuppressLint("NewApi")
+    public MigrationBenchmarkTest() {
+        super(MainActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        while (getActivity() == null || !getActivity().isPouchDroidReady()) {
+            Thread.sleep(100);
+            Log.i("Tests", "Waiting for pouchDroid to not be null");
+        }
+        sqliteDbName = "unit-test-" + Integer.toHexString(new Random().nextInt()) + ".db";
+        sqliteDatabase = getActivity().openOrCreateDatabase(sqliteDbName, Context.MODE_PRIVATE, null);
+        sqliteDatabase.execSQL("create table people (id integer primary key, name text, age integer, bio text)");
+
+        sqliteDatabase.beginTransaction();
+        try {
+            SQLiteStatement insert = sqliteDatabase.compileStatement("insert into people values (?, ?, ?, ?)");
+            for (int i = 0; i < NUM_ROWS; i++) {
+                insert.bindLong(1, i);
+                insert.bindString(2, "Person " + i);
+                insert.bindLong(3, i % 100);
+                insert.bindString(4, "Lorem ipsum dolor sit amet, consectetur adipisicing elit");
+                insert.executeInsert();
+            }
+            sqliteDatabase.setTransactionSuccessful();
+        } finally {
+            sqliteDatabase.endTransaction();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        sqliteDatabase.close();
+        getActivity().deleteDatabase(sqliteDbName);
+        super.tearDown();
+    }
+
+    public void testPaging() {
+        long start = SystemClock.elapsedRealtime();
+        int numRows = 0;
+        for (int offset = 0;; offset += PAGE_SIZE) {
+            int count = countRows(sqliteDatabase.rawQuery(
+                    "select id, * from people limit " + PAGE_SIZE + " offset " + offset, null));
+            if (count == 0) {
+                break;
+            }
+            numRows += count;
+        }
+        assertEquals(NUM_ROWS, numRows);
+        Log.i(TAG, String.format("limit/offset paging, %d rows: %d ms", NUM_ROWS,
+                SystemClock.elapsedRealtime() - start));
+
+        start = SystemClock.elapsedRealtime();
+        numRows = 0;
+        long lastRowid = Long.MIN_VALUE;
+        for (;;) {
+            Cursor cursor = sqliteDatabase.rawQuery("select _rowid_, id, * from people where _rowid_ > ? "
+                    + "order by _rowid_ limit " + PAGE_SIZE, new String[] {Long.toString(lastRowid)});
+            try {
+                if (!cursor.moveToLast()) {
+                    break;
+                }
+                lastRowid = cursor.getLong(0);
+                numRows += cursor.getCount();
+            } finally {
+                cursor.close();
+            }
+        }
+        assertEquals(NUM_ROWS, numRows);
+        Log.i(TAG, String.format("keyset paging, %d rows: %d ms", NUM_ROWS, SystemClock.elapsedRealtime() - start));
+    }
+
+    public void testMigration() throws Exception {
+        long startHeapBytes = getUsedHeapBytes();
+        peakHeapBytes = startHeapBytes;
+
+        long elapsed = migrate(1, false, "people");
+        Log.i(TAG, String.format("migration, %d rows: %d ms, %.1f rows/s", NUM_ROWS, elapsed,
+                NUM_ROWS * 1000.0 / Math.max(1, elapsed)));
+        Log.i(TAG, String.format("migration, %d rows: peak heap %d KB, %d KB above the start, out of %d KB",
+                NUM_ROWS, peakHeapBytes / 1024, (peakHeapBytes - startHeapBytes) / 1024,
+                Runtime.getRuntime().maxMemory() / 1024));
+    }
+
+    public void testConcurrentTables() throws Exception {
+        String[] tableNames = new String[NUM_TABLES];
+        for (int i = 0; i < NUM_TABLES; i++) {
+            tableNames[i] = "people_" + i;
+            sqliteDatabase.execSQL("create table " + tableNames[i] + " (id integer primary key, name text, "
+                    + "age integer, bio text)");
+            sqliteDatabase.execSQL("insert into " + tableNames[i] + " select * from people where id % " + NUM_TABLES
+                    + " = " + i);
+        }
+
+        for (int maxConcurrentTables : new int[] {1, NUM_TABLES}) {
+            long elapsed = migrate(maxConcurrentTables, false, tableNames);
+            Log.i(TAG, String.format("migration, %d rows in %d tables, %d at a time: %d ms, %.1f rows/s", NUM_ROWS,
+                    NUM_TABLES, maxConcurrentTables, elapsed, NUM_ROWS * 1000.0 / Math.max(1, elapsed)));
+        }
+    }
+
+    public void testDirectLoad() throws Exception {
+        for (boolean directLoad : new boolean[] {false, true}) {
+            long elapsed = migrate(1, directLoad, "people");
+            Log.i(TAG, String.format("migration, %d rows, %s: %d ms, %.1f rows/s", NUM_ROWS,
+                    directLoad ? "direct load" : "through PouchDB", elapsed,
+                    NUM_ROWS * 1000.0 / Math.max(1, elapsed)));
+        }
+    }
+
+    /**
+     * Migrate the tables into a new PouchDB, check that every row made it, and return how long it took.
+     */
+    private long migrate(int maxConcurrentTables, boolean directLoad, String... tableNames) throws Exception {
+        String pouchDBName = "unit-test-" + Integer.toHexString(new Random().nextInt());
+        final CountDownLatch done = new CountDownLatch(1);
+
+        PouchDroidMigrationTask.Builder builder = new PouchDroidMigrationTask.Builder(getActivity().getPouchDroid(),
+                sqliteDatabase);
+        for (String tableName : tableNames) {
+            builder.addSqliteTable(tableName, "id");
+        }
+        long start = SystemClock.elapsedRealtime();
+        builder.setUserId("benchmark")
+                .setPouchDBName(pouchDBName)
+                .setMaxConcurrentTables(maxConcurrentTables)
+                .setDirectLoad(directLoad)
+                .setProgressListener(new MigrationProgressListener() {
+
+                    @Override
+                    public void onStart() {
+                    }
+
+                    @Override
+                    public void onProgress(String tableName, int numRowsTotal, int numRowsLoaded) {
+                        peakHeapBytes = Math.max(peakHeapBytes, getUsedHeapBytes());
+                    }
+
+                    @Override
+                    public void onEnd() {
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onDocsDeleted(int numDocumentsDeleted) {
+                    }
+                })
+                .build()
+                .start();
+        assertTrue(done.await(2, TimeUnit.HOURS));
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        PouchDB<GenericSqliteDocument> pouchDB = PouchDB.newPouchDB(GenericSqliteDocument.class,
+                getActivity().getPouchDroid(), pouchDBName);
+        try {
+            assertEquals(NUM_ROWS, pouchDB.info().getDocCount());
+        } finally {
+            pouchDB.destroy();
+        }
+        return elapsed;
+    }
+
+    private static long getUsedHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    private static int countRows(Cursor cursor) {
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
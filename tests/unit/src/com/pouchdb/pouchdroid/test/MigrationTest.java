@@ -0,0 +1,574 @@
+package com.pouchdb.pouchdroid.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.os.SystemClock;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+
+import com.pouchdb.pouchdroid.appforunittests.MainActivity;
+import com.pouchdb.pouchdroid.migration.GenericSqliteDocument;
+import com.pouchdb.pouchdroid.migration.MigrationChangeTracker;
+import com.pouchdb.pouchdroid.migration.MigrationProgressListener;
+import com.pouchdb.pouchdroid.migration.MigrationTestUtils;
+import com.pouchdb.pouchdroid.migration.PouchDroidMigrationTask;
+import com.pouchdb.pouchdroid.pouch.PouchDB;
+import com.pouchdb.pouchdroid.pouch.ReplicationHandle;
+import com.pouchdb.pouchdroid.pouch.model.AllDocsInfo.Row;
+import com.pouchdb.pouchdroid.pouch.model.DatabaseInfo;
+import com.pouchdb.pouchdroid.pouch.model.PouchInfo;
+import com.pouchdb.pouchdroid.test.data.SqliteDocumentWithRevisions;
+import com.pouchdb.pouchdroid.util.PouchOptions;
+
+/**
+ * Migrates small tables into a fresh PouchDB, and checks which docs end up in it, and with which revs, whether
+ * they were written through PouchDB or straight into its tables.
+ */
+public class MigrationTest extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    private static final String USER_ID = "test";
+
+    private String sqliteDbName;
+    private SQLiteDatabase sqliteDatabase;
+    private String pouchDBName;
+    private PouchDB<GenericSqliteDocument> pouchDB;
+    private PouchDB<SqliteDocumentWithRevisions> revisionsPouchDB; // the same one, for reading rev histories
+
+    @SuppressLint("NewApi")
+    public MigrationTest() {
+        super(MainActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        while (getActivity() == null || !getActivity().isPouchDroidReady()) {
+            Thread.sleep(100);
+            Log.i("Tests", "Waiting for pouchDroid to not be null");
+        }
+        String name = "unit-test-" + Integer.toHexString(new Random().nextInt());
+        sqliteDbName = name + ".db";
+        sqliteDatabase = getActivity().openOrCreateDatabase(sqliteDbName, Context.MODE_PRIVATE, null);
+        pouchDBName = name;
+        pouchDB = PouchDB.newPouchDB(GenericSqliteDocument.class, getActivity().getPouchDroid(), pouchDBName);
+        revisionsPouchDB = PouchDB.newPouchDB(SqliteDocumentWithRevisions.class, getActivity().getPouchDroid(),
+                pouchDBName);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        pouchDB.destroy();
+        sqliteDatabase.close();
+        getActivity().deleteDatabase(sqliteDbName);
+        super.tearDown();
+    }
+
+    public void testResumeFromCheckpoint() throws Exception {
+        createPeople(200);
+        // as if the last migration had died halfway through
+        MigrationTestUtils.saveCheckpoint(getActivity(), pouchDBName, getDocIdPrefix("people"),
+                Arrays.asList("_rowid_"), Arrays.asList("100"), Arrays.asList("integer"), 100);
+
+        Migration migration = migrate(false, "people");
+        assertEquals(100, (int) migration.numRowsLoaded.get(0));
+        assertEquals(200, (int) migration.numRowsLoaded.get(migration.numRowsLoaded.size() - 1));
+        Map<String, String> revs = getRevs();
+        assertEquals(100, revs.size());
+        for (int i = 1; i <= 200; i++) {
+            assertEquals(i > 100, revs.containsKey(getDocId("people", i)));
+        }
+
+        // the checkpoint is gone once the migration has finished, so the next one reads the whole table
+        migration = migrate(false, "people");
+        assertEquals(200, (int) migration.numRowsLoaded.get(migration.numRowsLoaded.size() - 1));
+        assertEquals(200, getRevs().size());
+    }
+
+    public void testTypelessKeysWithoutRowid() throws Exception {
+        if (Build.VERSION.SDK_INT < 21) {
+            return; // no WITHOUT ROWID before SQLite 3.8.2
+        }
+        // paged through by id, which sorts numbers before text whatever they look like
+        sqliteDatabase.execSQL("create table untyped (id primary key, name text) without rowid");
+        for (int i = 1; i <= 100; i++) {
+            insert("untyped", i);
+        }
+        insert("untyped", 0.25, 100.5, "150", "abc");
+
+        Migration migration = migrate(false, "untyped");
+        assertTrue(migration.numRowsLoaded.size() > 1); // i.e. more than one batch
+        assertEquals(104, (int) migration.numRowsLoaded.get(migration.numRowsLoaded.size() - 1));
+        Map<String, String> revs = getRevs();
+        assertEquals(104, revs.size());
+        for (int i = 1; i <= 100; i++) {
+            assertTrue(revs.containsKey(getDocId("untyped", i)));
+        }
+        for (Object id : Arrays.asList(0.25, 100.5, "150", "abc")) {
+            assertTrue(revs.containsKey(getDocId("untyped", id)));
+        }
+    }
+
+    public void testIncrementalMigration() throws Exception {
+        createPeople(50);
+        Migration migration = migrate(true, "people");
+        // there's nothing to go on yet, so the whole table is migrated
+        assertEquals(50, (int) migration.numRowsLoaded.get(migration.numRowsLoaded.size() - 1));
+        Map<String, String> revs = getRevs();
+        assertEquals(50, revs.size());
+
+        sqliteDatabase.execSQL("insert into people values (51, 'Person 51')");
+        sqliteDatabase.execSQL("update people set name = 'Person 10, renamed' where id = 10");
+        sqliteDatabase.execSQL("delete from people where id = 20");
+        migration = migrate(true, "people");
+        assertEquals(Arrays.asList(3), migration.numRowsLoaded);
+        assertEquals(1, migration.numDocsDeleted);
+        Map<String, String> newRevs = getRevs();
+        assertEquals(50, newRevs.size());
+        assertTrue(newRevs.containsKey(getDocId("people", 51)));
+        assertFalse(newRevs.containsKey(getDocId("people", 20)));
+        assertFalse(revs.get(getDocId("people", 10)).equals(newRevs.get(getDocId("people", 10))));
+        for (int i = 1; i <= 50; i++) {
+            if (i != 10 && i != 20) {
+                // untouched
+                assertEquals(revs.get(getDocId("people", i)), newRevs.get(getDocId("people", i)));
+            }
+        }
+        assertEquals("Person 10, renamed", pouchDB.get(getDocId("people", 10)).getContent().get("name"));
+    }
+
+    public void testIncrementalMigrationOfChangedId() throws Exception {
+        createPeople(50);
+        migrate(true, "people");
+
+        sqliteDatabase.execSQL("update people set id = 1000 where id = 5");
+        Migration migration = migrate(true, "people");
+        assertEquals(Arrays.asList(2), migration.numRowsLoaded);
+        assertEquals(1, migration.numDocsDeleted);
+        Map<String, String> revs = getRevs();
+        assertEquals(50, revs.size());
+        assertFalse(revs.containsKey(getDocId("people", 5)));
+        assertTrue(revs.containsKey(getDocId("people", 1000)));
+    }
+
+    public void testRemoveChangeTracking() throws Exception {
+        createPeople(50);
+        migrate(true, "people");
+
+        MigrationChangeTracker.removeChangeTracking(sqliteDatabase);
+        // without the triggers, nobody notices this one
+        sqliteDatabase.execSQL("insert into people values (51, 'Person 51')");
+        Migration migration = migrate(true, "people");
+        assertEquals(51, (int) migration.numRowsLoaded.get(migration.numRowsLoaded.size() - 1));
+        assertEquals(51, getRevs().size());
+    }
+
+    public void testIncrementalMigrationIntoTwoPouchDBs() throws Exception {
+        createPeople(50);
+        String otherPouchDBName = pouchDBName + "-other";
+        PouchDB<GenericSqliteDocument> otherPouchDB = PouchDB.newPouchDB(GenericSqliteDocument.class,
+                getActivity().getPouchDroid(), otherPouchDBName);
+        try {
+            migrate(pouchDBName, true, false, "people");
+            migrate(otherPouchDBName, true, false, "people");
+
+            sqliteDatabase.execSQL("update people set name = 'Person 10, renamed' where id = 10");
+            assertEquals(Arrays.asList(1), migrate(pouchDBName, true, false, "people").numRowsLoaded);
+            // the other PouchDB hasn't seen the change yet, so it's still in the log
+            assertTrue(countLoggedChanges() > 0);
+            assertEquals(Arrays.asList(1), migrate(otherPouchDBName, true, false, "people").numRowsLoaded);
+            assertEquals(0, countLoggedChanges());
+            assertEquals("Person 10, renamed", otherPouchDB.get(getDocId("people", 10)).getContent().get("name"));
+
+            // and once both have it, neither migrates it again
+            assertTrue(migrate(pouchDBName, true, false, "people").numRowsLoaded.isEmpty());
+        } finally {
+            otherPouchDB.destroy();
+        }
+    }
+
+    public void testDeletes() throws Exception {
+        // item is a prefix of item_tag, but its doc ids come after item_tag's ('~' > '_')
+        sqliteDatabase.execSQL("create table item (id text primary key, name text)");
+        sqliteDatabase.execSQL("create table item_tag (id integer primary key, name text)");
+        sqliteDatabase.execSQL("create table note (id integer primary key, name text)");
+        // PouchDB sorts by code point, so the surrogate pair goes after U+FB01 and U+FFFD, unlike in Java
+        insert("item", "a", "b", "Z", "\u00e9", "\u00f8", "\u65e5\u672c", "\uD834\uDD1E", "\uFB01", "\uFFFD");
+        for (int i = 1; i <= 20; i++) {
+            insert("item_tag", i);
+        }
+        for (int i = 1; i <= 10; i++) {
+            insert("note", i);
+        }
+        migrate(true, "item", "item_tag", "note");
+        Set<String> docIds = new HashSet<String>(getRevs().keySet());
+        assertEquals(39, docIds.size());
+
+        sqliteDatabase.execSQL("delete from item where id in (?, ?, ?)", new Object[] {"b", "\u00e9", "\uD834\uDD1E"});
+        sqliteDatabase.execSQL("delete from item_tag where id in (3, 15)");
+        sqliteDatabase.execSQL("delete from note where id = 4");
+        // so that only note's changes get migrated, and the others are migrated in full
+        recreate("item", "text");
+        recreate("item_tag", "integer");
+        Migration migration = migrate(true, "item", "item_tag", "note");
+        assertEquals(6, migration.numDocsDeleted);
+        docIds.removeAll(Arrays.asList(getDocId("item", "b"), getDocId("item", "\u00e9"),
+                getDocId("item", "\uD834\uDD1E"), getDocId("item_tag", 3), getDocId("item_tag", 15),
+                getDocId("note", 4)));
+        assertEquals(docIds, getRevs().keySet());
+    }
+
+    public void testDeletesAfterManyDeletedDocs() throws Exception {
+        sqliteDatabase.execSQL("create table item (id integer primary key, name text)");
+        // four digits, so that the doc ids sort the same way as the ids
+        for (int i = 1000; i < 1700; i++) {
+            insert("item", i);
+        }
+        migrate(false, "item");
+        sqliteDatabase.execSQL("delete from item where id < 1600");
+        assertEquals(600, migrate(false, "item").numDocsDeleted);
+
+        // the first page of docs scanned by the next migration has nothing but deleted ones
+        sqliteDatabase.execSQL("delete from item where id in (1650, 1699)");
+        assertEquals(2, migrate(false, "item").numDocsDeleted);
+        Map<String, String> revs = getRevs();
+        assertEquals(98, revs.size());
+        assertTrue(revs.containsKey(getDocId("item", 1600)));
+        assertFalse(revs.containsKey(getDocId("item", 1650)));
+        assertFalse(revs.containsKey(getDocId("item", 1699)));
+    }
+
+    public void testUnchangedRowsAreSkipped() throws Exception {
+        createPeople(50);
+        migrate(false, "people");
+        Map<String, String> revs = getRevs();
+
+        Migration migration = migrate(false, "people");
+        assertEquals(50, (int) migration.numRowsSkipped.get("people"));
+        assertEquals(revs, getRevs());
+
+        sqliteDatabase.execSQL("update people set name = 'Person 7, renamed' where id = 7");
+        migration = migrate(false, "people");
+        assertEquals(49, (int) migration.numRowsSkipped.get("people"));
+        Map<String, String> newRevs = getRevs();
+        assertFalse(revs.get(getDocId("people", 7)).equals(newRevs.remove(getDocId("people", 7))));
+        revs.remove(getDocId("people", 7));
+        assertEquals(revs, newRevs);
+        assertEquals("Person 7, renamed", pouchDB.get(getDocId("people", 7)).getContent().get("name"));
+
+        // the row hasn't changed, but the doc has, since the last migration wrote it
+        GenericSqliteDocument document = pouchDB.get(getDocId("people", 12));
+        document.getContent().put("name", "Person 12, edited");
+        String editedRev = pouchDB.put(document).getRev();
+        migration = migrate(false, "people");
+        assertEquals(49, (int) migration.numRowsSkipped.get("people"));
+        document = pouchDB.get(getDocId("people", 12));
+        assertFalse(editedRev.equals(document.getPouchRev()));
+        assertEquals("Person 12", document.getContent().get("name"));
+    }
+
+    public void testDirectLoad() throws Exception {
+        int updateSeq = pouchDB.info().getUpdateSeq(); // which also makes sure PouchDB has set up its tables
+        List<PouchInfo> infos = directLoad(createDocument("a", "Alice"), createDocument("b", "Bob"));
+        assertEquals(2, infos.size());
+        for (PouchInfo info : infos) {
+            assertTrue(info.isOk());
+            assertTrue(info.getRev().startsWith("1-"));
+        }
+        GenericSqliteDocument document = pouchDB.get("a");
+        assertEquals(infos.get(0).getRev(), document.getPouchRev());
+        assertEquals("Alice", document.getContent().get("name"));
+        assertEquals(infos.get(1).getRev(), pouchDB.get("b").getPouchRev());
+        DatabaseInfo info = pouchDB.info();
+        assertEquals(2, info.getDocCount());
+        assertEquals(updateSeq + 2, info.getUpdateSeq());
+    }
+
+    public void testDirectLoadOfChangedDoc() throws Exception {
+        pouchDB.info();
+        String rev = directLoad(createDocument("a", "Alice")).get(0).getRev();
+        String newRev = directLoad(createDocument("a", "Alice, renamed")).get(0).getRev();
+        assertTrue(newRev.startsWith("2-"));
+
+        SqliteDocumentWithRevisions document = getWithRevisions("a");
+        assertEquals(newRev, document.getPouchRev());
+        assertEquals("Alice, renamed", document.getContent().get("name"));
+        assertEquals(2, document.getRevisions().getStart());
+        assertEquals(Arrays.asList(getRevId(newRev), getRevId(rev)), document.getRevisions().getIds());
+    }
+
+    public void testJavascriptWritesOnDirectlyLoadedDoc() throws Exception {
+        pouchDB.info();
+        directLoad(createDocument("a", "Alice"));
+
+        GenericSqliteDocument document = pouchDB.get("a");
+        document.getContent().put("name", "Alice, edited");
+        PouchInfo info = pouchDB.put(document);
+        assertTrue(info.isOk());
+        assertTrue(info.getRev().startsWith("2-"));
+        document = pouchDB.get("a");
+        assertEquals("Alice, edited", document.getContent().get("name"));
+
+        assertTrue(pouchDB.remove(document).isOk());
+        assertTrue(getRevs().isEmpty());
+    }
+
+    public void testDirectLoadOfDeletedDoc() throws Exception {
+        PouchInfo info = pouchDB.put(createDocument("a", "Alice"));
+        GenericSqliteDocument document = pouchDB.get("a");
+        String deletedRev = pouchDB.remove(document).getRev();
+        assertTrue(deletedRev.startsWith("2-"));
+
+        // revived, as a child of the deleted rev
+        String rev = directLoad(createDocument("a", "Alice, again")).get(0).getRev();
+        assertTrue(rev.startsWith("3-"));
+        SqliteDocumentWithRevisions revived = getWithRevisions("a");
+        assertEquals(rev, revived.getPouchRev());
+        assertEquals("Alice, again", revived.getContent().get("name"));
+        assertEquals(Arrays.asList(getRevId(rev), getRevId(deletedRev), getRevId(info.getRev())),
+                revived.getRevisions().getIds());
+    }
+
+    public void testChangesIncludeDirectLoads() throws Exception {
+        String otherPouchDBName = pouchDBName + "-other";
+        PouchDB<GenericSqliteDocument> otherPouchDB = PouchDB.newPouchDB(GenericSqliteDocument.class,
+                getActivity().getPouchDroid(), otherPouchDBName);
+        try {
+            int updateSeq = pouchDB.info().getUpdateSeq();
+            directLoad(createDocument("a", "Alice"), createDocument("b", "Bob"));
+            assertEquals(updateSeq + 2, pouchDB.info().getUpdateSeq());
+            replicate(otherPouchDBName);
+            assertEquals(getRevs(), getRevs(otherPouchDB));
+
+            // the replicator only asks for the changes since its checkpoint this time
+            directLoad(createDocument("a", "Alice, renamed"), createDocument("c", "Carol"));
+            assertEquals(updateSeq + 4, pouchDB.info().getUpdateSeq());
+            replicate(otherPouchDBName);
+            assertEquals(getRevs(), getRevs(otherPouchDB));
+            assertEquals("Alice, renamed", otherPouchDB.get("a").getContent().get("name"));
+        } finally {
+            otherPouchDB.destroy();
+        }
+    }
+
+    public void testDirectLoadMixedWithJavascript() throws Exception {
+        createPeople(20);
+        migrate(pouchDBName, false, false, "people");
+        Map<String, String> revs = getRevs();
+
+        // each time, the changed docs get a new rev on top of the one the other way wrote
+        for (int i = 0; i < 3; i++) {
+            boolean directLoad = i % 2 == 0;
+            sqliteDatabase.execSQL("update people set name = name || '!' where id <= 5");
+            sqliteDatabase.execSQL("insert into people values (" + (21 + i) + ", 'Person " + (21 + i) + "')");
+            migrate(pouchDBName, false, directLoad, "people");
+
+            Map<String, String> newRevs = getRevs();
+            assertEquals(21 + i, newRevs.size());
+            for (int id = 1; id <= 20; id++) {
+                String docId = getDocId("people", id);
+                SqliteDocumentWithRevisions document = getWithRevisions(docId);
+                if (id <= 5) {
+                    assertEquals(i + 2, document.getRevisions().getStart());
+                    assertEquals(getRevId(revs.get(docId)), document.getRevisions().getIds().get(1));
+                } else {
+                    assertEquals(revs.get(docId), newRevs.get(docId));
+                }
+                assertEquals(getName(id), document.getContent().get("name"));
+            }
+            assertEquals("Person " + (21 + i), pouchDB.get(getDocId("people", 21 + i)).getContent().get("name"));
+            revs = newRevs;
+        }
+        assertEquals(23, pouchDB.info().getDocCount());
+    }
+
+    private Migration migrate(boolean incremental, String... tableNames) throws InterruptedException {
+        return migrate(pouchDBName, incremental, false, tableNames);
+    }
+
+    /**
+     * Run a migration of the tables, whose ids are in their "id" column, and wait for it to end.
+     */
+    private Migration migrate(String pouchDBName, boolean incremental, boolean directLoad, String... tableNames)
+            throws InterruptedException {
+        final Migration migration = new Migration();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        PouchDroidMigrationTask.Builder builder = new PouchDroidMigrationTask.Builder(getActivity().getPouchDroid(),
+                sqliteDatabase);
+        for (String tableName : tableNames) {
+            builder.addSqliteTable(tableName, "id");
+        }
+        builder.setUserId(USER_ID)
+                .setPouchDBName(pouchDBName)
+                .setIncremental(incremental)
+                .setDirectLoad(directLoad)
+                .setProgressListener(new MigrationProgressListener() {
+
+                    @Override
+                    public void onStart() {
+                    }
+
+                    @Override
+                    public void onProgress(String tableName, int numRowsTotal, int numRowsLoaded) {
+                    }
+
+                    @Override
+                    public void onProgress(String tableName, int numRowsTotal, int numRowsLoaded,
+                            int numRowsSkipped) {
+                        migration.numRowsLoaded.add(numRowsLoaded);
+                        migration.numRowsSkipped.put(tableName, numRowsSkipped);
+                    }
+
+                    @Override
+                    public void onEnd() {
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onDocsDeleted(int numDocumentsDeleted) {
+                        migration.numDocsDeleted = numDocumentsDeleted;
+                    }
+                })
+                .build()
+                .start();
+        assertTrue(done.await(5, TimeUnit.MINUTES));
+        return migration;
+    }
+
+    /**
+     * A <code>people</code> table, with ids from 1 to numRows.
+     */
+    private void createPeople(int numRows) {
+        sqliteDatabase.execSQL("create table people (id integer primary key, name text)");
+        sqliteDatabase.beginTransaction();
+        try {
+            SQLiteStatement insert = sqliteDatabase.compileStatement("insert into people values (?, ?)");
+            for (int i = 1; i <= numRows; i++) {
+                insert.bindLong(1, i);
+                insert.bindString(2, "Person " + i);
+                insert.executeInsert();
+            }
+            sqliteDatabase.setTransactionSuccessful();
+        } finally {
+            sqliteDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Rows with these ids, in a table with an id and a name column.
+     */
+    private void insert(String tableName, Object... ids) {
+        for (Object id : ids) {
+            sqliteDatabase.execSQL("insert into " + tableName + " values (?, ?)", new Object[] {id, "Row " + id});
+        }
+    }
+
+    /**
+     * Rebuild a table like the ones {@link #insert(String, Object...)} fills, the way an app upgrading its schema
+     * might, which drops the change tracking triggers along with the old table.
+     */
+    private void recreate(String tableName, String idType) {
+        sqliteDatabase.execSQL("alter table " + tableName + " rename to old_" + tableName);
+        sqliteDatabase.execSQL("create table " + tableName + " (id " + idType + " primary key, name text)");
+        sqliteDatabase.execSQL("insert into " + tableName + " select * from old_" + tableName);
+        sqliteDatabase.execSQL("drop table old_" + tableName);
+    }
+
+    /**
+     * Rows in the log of changes that some PouchDB hasn't migrated yet.
+     */
+    private int countLoggedChanges() {
+        return (int) DatabaseUtils.longForQuery(sqliteDatabase, "select count(*) from pouchdroid_migration_changes",
+                null);
+    }
+
+    /**
+     * The row's name, as read from SQLite.
+     */
+    private String getName(int id) {
+        return DatabaseUtils.stringForQuery(sqliteDatabase, "select name from people where id = ?",
+                new String[] {Integer.toString(id)});
+    }
+
+    private List<PouchInfo> directLoad(GenericSqliteDocument... documents) {
+        return MigrationTestUtils.directLoad(getActivity(), pouchDBName, Arrays.asList(documents));
+    }
+
+    private static GenericSqliteDocument createDocument(String docId, String name) {
+        GenericSqliteDocument document = new GenericSqliteDocument();
+        document.setPouchId(docId);
+        Map<String, Object> content = new HashMap<String, Object>();
+        content.put("name", name);
+        document.setContent(content);
+        return document;
+    }
+
+    private SqliteDocumentWithRevisions getWithRevisions(String docId) {
+        return revisionsPouchDB.get(docId, PouchOptions.from(PouchOptions.REVS, true));
+    }
+
+    private static String getRevId(String rev) {
+        return rev.substring(rev.indexOf('-') + 1);
+    }
+
+    /**
+     * Replicate the PouchDB to another local one, and wait for it to finish.
+     */
+    private void replicate(String otherPouchDBName) throws InterruptedException {
+        ReplicationHandle handle = pouchDB.replicateTo(otherPouchDBName);
+        long deadline = SystemClock.elapsedRealtime() + TimeUnit.MINUTES.toMillis(1);
+        while (handle.getState() == ReplicationHandle.State.RUNNING) {
+            assertTrue(SystemClock.elapsedRealtime() < deadline);
+            Thread.sleep(100);
+        }
+        assertEquals(ReplicationHandle.State.COMPLETE, handle.getState());
+    }
+
+    private Map<String, String> getRevs() {
+        return getRevs(pouchDB);
+    }
+
+    /**
+     * The revs of the docs in a PouchDB, by doc id.
+     */
+    private static Map<String, String> getRevs(PouchDB<GenericSqliteDocument> pouchDB) {
+        Map<String, String> revs = new HashMap<String, String>();
+        for (Row<GenericSqliteDocument> row : pouchDB.allDocs(false).getRows()) {
+            revs.put(row.getId(), row.getValue().getRev());
+        }
+        return revs;
+    }
+
+    private String getDocIdPrefix(String tableName) {
+        return PouchDroidMigrationTask.getDocIdPrefix(USER_ID, sqliteDbName, tableName);
+    }
+
+    private String getDocId(String tableName, Object id) {
+        return getDocIdPrefix(tableName) + id;
+    }
+
+    /**
+     * What the progress listener heard.
+     */
+    private static class Migration {
+
+        final List<Integer> numRowsLoaded = new ArrayList<Integer>(); // in the order they were reported
+        final Map<String, Integer> numRowsSkipped = new HashMap<String, Integer>(); // per table, as last reported
+        int numDocsDeleted;
+    }
+}
@@ -0,0 +1,91 @@
+package com.pouchdb.pouchdroid.test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import android.annotation.SuppressLint;
+import android.os.SystemClock;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+
+import com.pouchdb.pouchdroid.appforunittests.MainActivity;
+import com.pouchdb.pouchdroid.pouch.PouchDB;
+import com.pouchdb.pouchdroid.pouch.ReplicationHandle;
+import com.pouchdb.pouchdroid.test.data.Person;
+import com.pouchdb.pouchdroid.test.util.FakeCouchDB;
+import com.pouchdb.pouchdroid.util.ReplicationOptions;
+
+/**
+ * Pulls the same database from a {@link FakeCouchDB} with different batch sizes, numbers of batches in flight and
+ * connection limits, over a slow "2G" link and a fast "Wi-Fi" one, and logs the docs/s for each.  Check logcat for
+ * the "Benchmark" tag.
+ */
+public class ReplicationBenchmarkTest extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    private static final String TAG = "Benchmark";
+
+    private static final int NUM_DOCS = 200;
+    private static final int DOC_SIZE = 500;
+
+    // batch_size, batches_limit, max_connections
+    private static final int[][] SETTINGS = {
+        {25, 1, 2},
+        {25, 3, 2},
+        {25, 3, 4},
+        {100, 1, 2},
+        {100, 3, 4},
+    };
+
+    @SuppressLint("NewApi")
+    public ReplicationBenchmarkTest() {
+        super(MainActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        while (getActivity() == null || !getActivity().isPouchDroidReady()) {
+            Thread.sleep(100);
+            Log.i("Tests", "Waiting for pouchDroid to not be null");
+        }
+    }
+
+    public void test2G() throws Exception {
+        benchmark("2G", 400, 20 * 1024);
+    }
+
+    public void testWifi() throws Exception {
+        benchmark("Wi-Fi", 20, 0);
+    }
+
+    private void benchmark(String network, long latencyMillis, int bytesPerSecond) throws Exception {
+        for (int[] setting : SETTINGS) {
+            ReplicationOptions options = new ReplicationOptions()
+                    .setBatchSize(setting[0])
+                    .setBatchesLimit(setting[1])
+                    .setMaxConnections(setting[2]);
+            double docsPerSecond = replicate(options, latencyMillis, bytesPerSecond);
+            Log.i(TAG, String.format("%s, batch_size=%d, batches_limit=%d, max_connections=%d: %.1f docs/s",
+                    network, setting[0], setting[1], setting[2], docsPerSecond));
+        }
+    }
+
+    private double replicate(ReplicationOptions options, long latencyMillis, int bytesPerSecond) throws Exception {
+        FakeCouchDB couchDB = new FakeCouchDB(NUM_DOCS, DOC_SIZE, latencyMillis, bytesPerSecond);
+        couchDB.start();
+        PouchDB<Person> pouchDB = PouchDB.newPouchDB(Person.class, getActivity().getPouchDroid(),
+                "unit-test-" + Integer.toHexString(new Random().nextInt()));
+        try {
+            long start = SystemClock.elapsedRealtime();
+            ReplicationHandle handle = pouchDB.replicateFrom(couchDB.getUrl(), options);
+            assertTrue(handle.awaitIdle(10, TimeUnit.MINUTES));
+            long elapsed = SystemClock.elapsedRealtime() - start;
+
+            assertEquals(NUM_DOCS, pouchDB.info().getDocCount());
+            return NUM_DOCS * 1000.0 / Math.max(1, elapsed);
+        } finally {
+            pouchDB.destroy();
+            couchDB.stop();
+        }
+    }
+}
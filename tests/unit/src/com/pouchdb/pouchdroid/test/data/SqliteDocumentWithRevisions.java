@@ -0,0 +1,47 @@
+package com.pouchdb.pouchdroid.test.data;
+
+import java.util.List;
+
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import com.pouchdb.pouchdroid.migration.GenericSqliteDocument;
+
+/**
+ * A migrated doc as PouchDB returns it with the <code>revs</code> option, i.e. with the rev ids of its ancestors.
+ */
+public class SqliteDocumentWithRevisions extends GenericSqliteDocument {
+
+    private Revisions revisions;
+
+    @JsonProperty("_revisions")
+    public Revisions getRevisions() {
+        return revisions;
+    }
+
+    @JsonProperty("_revisions")
+    public void setRevisions(Revisions revisions) {
+        this.revisions = revisions;
+    }
+
+    public static class Revisions {
+
+        private int start;
+        private List<String> ids;
+
+        public int getStart() {
+            return start;
+        }
+        public void setStart(int start) {
+            this.start = start;
+        }
+        /**
+         * The rev ids, without their positions, newest first.
+         */
+        public List<String> getIds() {
+            return ids;
+        }
+        public void setIds(List<String> ids) {
+            this.ids = ids;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.pouchdb.pouchdroid.test.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+
+import android.util.Log;
+
+/**
+ * Just enough of CouchDB, on localhost, for PouchDB to pull-replicate a database of generated docs from it: db info,
+ * _changes, single-rev doc GETs, _bulk_get and _local checkpoints.  Every request is delayed by a fixed latency, and
+ * responses are throttled to a fixed bandwidth, to simulate a mobile network.
+ */
+public class FakeCouchDB {
+
+    private static final String TAG = "FakeCouchDB";
+    private static final String DB_NAME = "benchmark";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int numDocs;
+    private final int docSize;
+    private final long latencyMillis;
+    private final int bytesPerSecond;
+    private final Map<String, JsonNode> localDocs = new HashMap<String, JsonNode>();
+    private ServerSocket serverSocket;
+
+    /**
+     * @param numDocs docs in the database, with ids doc0000000 and up
+     * @param docSize approximate size of each doc's JSON, in bytes
+     * @param latencyMillis added to every request
+     * @param bytesPerSecond response bandwidth, or 0 for no limit
+     */
+    public FakeCouchDB(int numDocs, int docSize, long latencyMillis, int bytesPerSecond) {
+        this.numDocs = numDocs;
+        this.docSize = docSize;
+        this.latencyMillis = latencyMillis;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread acceptThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        new Thread(new Runnable() {
+
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        }, "FakeCouchDB connection").start();
+                    } catch (IOException e) {
+                        // closed
+                    }
+                }
+            }
+        }, "FakeCouchDB");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public void stop() throws IOException {
+        serverSocket.close();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/" + DB_NAME;
+    }
+
+    private void serve(Socket socket) {
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            while (true) { // keep-alive
+                String requestLine = readLine(in);
+                if (requestLine == null || requestLine.length() == 0) {
+                    break;
+                }
+                int contentLength = 0;
+                String line;
+                while ((line = readLine(in)) != null && line.length() > 0) {
+                    if (line.toLowerCase(Locale.US).startsWith("content-length:")) {
+                        contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+                    }
+                }
+                byte[] body = new byte[contentLength];
+                for (int read = 0; read < contentLength;) {
+                    int count = in.read(body, read, contentLength - read);
+                    if (count == -1) {
+                        throw new IOException("unexpected end of request");
+                    }
+                    read += count;
+                }
+                String[] parts = requestLine.split(" ");
+                respond(out, parts[0], parts[1], body);
+            }
+        } catch (Exception e) {
+            Log.d(TAG, "connection closed: " + e);
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private void respond(OutputStream out, String method, String uri, byte[] body) throws IOException,
+            InterruptedException {
+        Thread.sleep(latencyMillis);
+
+        String path = uri.contains("?") ? uri.substring(0, uri.indexOf('?')) : uri;
+        Map<String, String> query = parseQuery(uri);
+        String dbPath = "/" + DB_NAME;
+        int status = 200;
+        Object response;
+
+        if (path.equals(dbPath) || path.equals(dbPath + "/")) {
+            ObjectNode info = objectMapper.createObjectNode();
+            info.put("db_name", DB_NAME);
+            info.put("doc_count", numDocs);
+            info.put("update_seq", numDocs);
+            response = info;
+        } else if (path.equals(dbPath + "/_changes")) {
+            response = changes(query);
+        } else if (path.equals(dbPath + "/_bulk_get") && method.equals("POST")) {
+            response = bulkGet(objectMapper.readTree(new String(body, "UTF-8")));
+        } else if (path.startsWith(dbPath + "/_local/")) {
+            String id = URLDecoder.decode(path.substring(dbPath.length() + 1), "UTF-8");
+            synchronized (localDocs) {
+                if (method.equals("PUT")) {
+                    ObjectNode doc = (ObjectNode) objectMapper.readTree(new String(body, "UTF-8"));
+                    doc.put("_rev", "0-1");
+                    localDocs.put(id, doc);
+                    status = 201;
+                    response = ok(id, "0-1");
+                } else if (localDocs.containsKey(id)) {
+                    response = localDocs.get(id);
+                } else {
+                    status = 404;
+                    response = notFound();
+                }
+            }
+        } else if (path.startsWith(dbPath + "/") && method.equals("GET")) {
+            String id = URLDecoder.decode(path.substring(dbPath.length() + 1), "UTF-8");
+            int index = getIndex(id);
+            if (index == -1) {
+                status = 404;
+                response = notFound();
+            } else {
+                response = doc(index);
+            }
+        } else {
+            status = 404;
+            response = notFound();
+        }
+
+        byte[] responseBody = objectMapper.writeValueAsBytes(response);
+        StringBuilder headers = new StringBuilder()
+                .append("HTTP/1.1 ").append(status).append(status < 400 ? " OK" : " Error").append("\r\n")
+                .append("Content-Type: application/json\r\n")
+                .append("Content-Length: ").append(responseBody.length).append("\r\n")
+                .append("\r\n");
+        out.write(headers.toString().getBytes("UTF-8"));
+        writeThrottled(out, responseBody);
+        out.flush();
+    }
+
+    private JsonNode changes(Map<String, String> query) {
+        int since = query.containsKey("since") ? Integer.parseInt(query.get("since")) : 0;
+        int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : numDocs;
+        ObjectNode changes = objectMapper.createObjectNode();
+        ArrayNode results = changes.putArray("results");
+        int seq = since;
+        while (seq < numDocs && seq < since + limit) {
+            seq++;
+            ObjectNode change = results.addObject();
+            change.put("seq", seq);
+            change.put("id", getId(seq - 1));
+            change.putArray("changes").addObject().put("rev", getRev(seq - 1));
+        }
+        changes.put("last_seq", seq);
+        return changes;
+    }
+
+    private JsonNode bulkGet(JsonNode request) {
+        ObjectNode response = objectMapper.createObjectNode();
+        ArrayNode results = response.putArray("results");
+        for (JsonNode docRequest : request.path("docs")) {
+            String id = docRequest.path("id").asText();
+            ObjectNode result = results.addObject();
+            result.put("id", id);
+            int index = getIndex(id);
+            ObjectNode doc = result.putArray("docs").addObject();
+            if (index == -1) {
+                doc.put("error", notFound());
+            } else {
+                doc.put("ok", doc(index));
+            }
+        }
+        return response;
+    }
+
+    private JsonNode doc(int index) {
+        ObjectNode doc = objectMapper.createObjectNode();
+        doc.put("_id", getId(index));
+        doc.put("_rev", getRev(index));
+        ObjectNode revisions = doc.putObject("_revisions");
+        revisions.put("start", 1);
+        revisions.putArray("ids").add(getRev(index).substring(2));
+        doc.put("index", index);
+        StringBuilder payload = new StringBuilder(docSize);
+        while (payload.length() < docSize) {
+            payload.append("lorem ipsum ");
+        }
+        doc.put("payload", payload.toString());
+        return doc;
+    }
+
+    private JsonNode ok(String id, String rev) {
+        ObjectNode ok = objectMapper.createObjectNode();
+        ok.put("ok", true);
+        ok.put("id", id);
+        ok.put("rev", rev);
+        return ok;
+    }
+
+    private JsonNode notFound() {
+        ObjectNode error = objectMapper.createObjectNode();
+        error.put("error", "not_found");
+        error.put("reason", "missing");
+        return error;
+    }
+
+    private void writeThrottled(OutputStream out, byte[] bytes) throws IOException, InterruptedException {
+        if (bytesPerSecond <= 0) {
+            out.write(bytes);
+            return;
+        }
+        int chunkSize = Math.max(1, bytesPerSecond / 10);
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, bytes.length - offset);
+            out.write(bytes, offset, length);
+            out.flush();
+            Thread.sleep(1000L * length / bytesPerSecond);
+        }
+    }
+
+    private static String getId(int index) {
+        return String.format(Locale.US, "doc%07d", index);
+    }
+
+    private static String getRev(int index) {
+        return String.format(Locale.US, "1-%032x", index);
+    }
+
+    private int getIndex(String id) {
+        if (!id.matches("doc\\d{7}")) {
+            return -1;
+        }
+        int index = Integer.parseInt(id.substring(3));
+        return index < numDocs ? index : -1;
+    }
+
+    private static Map<String, String> parseQuery(String uri) throws IOException {
+        Map<String, String> query = new HashMap<String, String>();
+        if (uri.contains("?")) {
+            for (String param : uri.substring(uri.indexOf('?') + 1).split("&")) {
+                int equals = param.indexOf('=');
+                if (equals != -1) {
+                    query.put(param.substring(0, equals), URLDecoder.decode(param.substring(equals + 1), "UTF-8"));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        return new String(line.toByteArray(), "US-ASCII");
+    }
+}